@@ -0,0 +1,79 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.EvolutionEngine;
+import com.github.malpenhorn.gameoflife.Grid;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generations per second of Grid.evolve() on the engine of a subclass. The soup is seeded again before
+ * every iteration, so that all iterations measure the same stretch of its evolution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class AbstractEvolveBenchmark {
+    @Param({"random-soup", "r-pentomino", "gosper-gun", "acorn"})
+    public String pattern;
+
+    // The patterns other than the random soup are only centered on the board, the engines are unbounded
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"0.25"})
+    public double density;
+
+    private Grid grid;
+
+    protected abstract EvolutionEngine createEngine();
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        grid = new Grid(size, size, createEngine());
+        grid.initialize(Patterns.create(pattern, size, density, 42));
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        grid.getEngine().close();
+    }
+
+    @Benchmark
+    public long evolve(CellUpdates cellUpdates) {
+        cellUpdates.cellUpdates += grid.getPopulation();
+        grid.evolve();
+        return grid.getGeneration();
+    }
+
+    /**
+     * Counts the live cells evolved per second, the population of every generation before it evolves,
+     * alongside the generations per second of the benchmark
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class CellUpdates {
+        public long cellUpdates;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cellUpdates = 0;
+        }
+    }
+}
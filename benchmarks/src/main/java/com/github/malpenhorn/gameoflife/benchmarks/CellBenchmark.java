@@ -0,0 +1,77 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.Cell;
+import com.github.malpenhorn.gameoflife.LongCellSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Cell hashing and equality, and cell lookups in a HashSet of Cells against a LongCellSet
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CellBenchmark {
+    @Param({"1000", "1000000"})
+    public int liveCells;
+
+    private Cell cell;
+    private Cell equalCell;
+    private Set<Cell> cellHashSet;
+    private LongCellSet longCellSet;
+    private int side;
+    private int index;
+
+    @Setup
+    public void setup() {
+        cell = new Cell(12345, -6789);
+        equalCell = new Cell(12345, -6789);
+        side = (int) Math.sqrt(liveCells);
+        cellHashSet = new HashSet<>();
+        longCellSet = new LongCellSet();
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                cellHashSet.add(new Cell(x, y));
+                longCellSet.add(x, y);
+            }
+        }
+    }
+
+    @Benchmark
+    public int hashCodeOfCell() {
+        return cell.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsOfCell() {
+        return cell.equals(equalCell);
+    }
+
+    @Benchmark
+    public boolean containsInCellHashSet() {
+        index++;
+        return cellHashSet.contains(new Cell(index % side, (index / side) % side));
+    }
+
+    @Benchmark
+    public boolean containsInLongCellSet() {
+        index++;
+        return longCellSet.contains(index % side, (index / side) % side);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.EngineType;
+import com.github.malpenhorn.gameoflife.EvolutionEngine;
+
+final class Engines {
+    private Engines() {
+    }
+
+    static EvolutionEngine create(String name, int threads) {
+        return EngineType.of(name).create(threads);
+    }
+}
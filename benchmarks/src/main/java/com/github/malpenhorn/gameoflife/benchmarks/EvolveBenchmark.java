@@ -0,0 +1,17 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.EvolutionEngine;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the engines that evolve on the calling thread, see TileEvolveBenchmark for the parallel tile engine
+ */
+public class EvolveBenchmark extends AbstractEvolveBenchmark {
+    @Param({"neighbor-count", "hashlife"})
+    public String engine;
+
+    @Override
+    protected EvolutionEngine createEngine() {
+        return Engines.create(engine, 1);
+    }
+}
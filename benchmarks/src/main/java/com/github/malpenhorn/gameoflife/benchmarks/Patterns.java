@@ -0,0 +1,82 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.LongCellSet;
+
+import java.util.Random;
+
+/**
+ * Well-known starting patterns for the benchmarks
+ */
+public final class Patterns {
+    private final static String[] R_PENTOMINO = {
+            ".OO",
+            "OO.",
+            ".O."
+    };
+
+    private final static String[] ACORN = {
+            ".O.....",
+            "...O...",
+            "OO..OOO"
+    };
+
+    private final static String[] GOSPER_GLIDER_GUN = {
+            "........................O...........",
+            "......................O.O...........",
+            "............OO......OO............OO",
+            "...........O...O....OO............OO",
+            "OO........O.....O...OO..............",
+            "OO........O...O.OO....O.O...........",
+            "..........O.....O.......O...........",
+            "...........O...O....................",
+            "............OO......................"
+    };
+
+    private Patterns() {
+    }
+
+    /**
+     * Creates the named pattern centered on a board of the given size
+     */
+    public static LongCellSet create(String name, int size, double density, long seed) {
+        switch (name) {
+            case "r-pentomino":
+                return centered(R_PENTOMINO, size);
+            case "acorn":
+                return centered(ACORN, size);
+            case "gosper-gun":
+                return centered(GOSPER_GLIDER_GUN, size);
+            case "random-soup":
+                return randomSoup(size, density, seed);
+            default:
+                throw new IllegalArgumentException("Unknown pattern: " + name);
+        }
+    }
+
+    public static LongCellSet randomSoup(int size, double density, long seed) {
+        Random random = new Random(seed);
+        LongCellSet cells = new LongCellSet((int) (size * (long) size * density));
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (random.nextDouble() < density) {
+                    cells.add(x, y);
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static LongCellSet centered(String[] rows, int size) {
+        LongCellSet cells = new LongCellSet();
+        int offsetX = (size - rows[0].length()) / 2;
+        int offsetY = (size - rows.length) / 2;
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                if (rows[y].charAt(x) == 'O') {
+                    cells.add(offsetX + x, offsetY + y);
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.CLIGridPrinter;
+import com.github.malpenhorn.gameoflife.Grid;
+import com.github.malpenhorn.gameoflife.GridPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures frames per second of the CLI printer, writing to a stream that discards its output.
+ * The printer only writes the characters that changed since the previous frame.
+ * GUIGridPrinter is not covered, it needs a running JavaFX toolkit and stage.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrinterBenchmark {
+    @Param({"10", "80"})
+    public int size;
+
+    @Param({"0.25"})
+    public double density;
+
+    private Grid[] grids;
+    private GridPrinter printer;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        // Two consecutive generations printed in turn, so every frame has changed characters to write
+        grids = new Grid[2];
+        for (int i = 0; i < grids.length; i++) {
+            grids[i] = new Grid(size, size);
+            grids[i].initialize(Patterns.randomSoup(size, density, 42));
+        }
+        grids[1].evolve();
+        printer = new CLIGridPrinter(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, CLIGridPrinter.Glyphs.HALF_BLOCK);
+    }
+
+    @Benchmark
+    public void printCLI() {
+        printer.print(grids[frame++ & 1]);
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.malpenhorn.gameoflife.benchmarks;
+
+import com.github.malpenhorn.gameoflife.EvolutionEngine;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the tile engine, the only one that evolves in parallel, on each number of threads
+ */
+public class TileEvolveBenchmark extends AbstractEvolveBenchmark {
+    @Param({"1", "4"})
+    public int threads;
+
+    @Override
+    protected EvolutionEngine createEngine() {
+        return Engines.create("tile", threads);
+    }
+}
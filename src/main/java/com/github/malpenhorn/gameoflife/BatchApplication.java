@@ -0,0 +1,345 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a simulation without a display as fast as the engine allows, for batch runs and sweeps on servers.
+ * Statistics are written as CSV lines every interval generations and at the end, through a buffered channel.
+ * <p>
+ * Example: {@code java -cp game-of-life.jar com.github.malpenhorn.gameoflife.BatchApplication
+ * --size 1024 --density 0.3 --seed 42 --generations 10000 --interval 1000 --engine tile --threads 8}
+ * <p>
+ * With {@code --soups} it instead runs that many soups with consecutive seeds on the threads, each until it settles
+ * or reaches the number of generations, and writes a summary table of how they ended.
+ * With {@code --max-period} a single run stops as soon as the grid settles into a still life or a cycle of at most
+ * that period. With {@code --census} a census of the objects of the last generation, or of the last generations of
+ * all soups, is written as CSV to the given file. With {@code --topology bounded} or {@code torus} the cells live on a
+ * board of the given size, with dead cells beyond its edges or with its edges joined, instead of an unbounded plane.
+ * With {@code --metrics} a single run evolves one generation at a time, records SimulationMetrics that are published
+ * over JMX and written to the given rolling CSV log every interval. With {@code --storage off-heap} or a file name
+ * the board of a single bounded or toroidal run is kept outside the heap, in direct memory or a memory-mapped file.
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * With {@code --resume} a single run that was stopped or crashed continues from the last complete checkpoint in the
+ * given file up to the same number of generations, and appends its checkpoints to that file.
+ */
+public class BatchApplication {
+    private final static int BUFFER_SIZE = 1 << 16;
+    // The metrics log is rolled over at 16 MiB
+    private final static long MAX_METRICS_LOG_BYTES = 1 << 24;
+    private final static String USAGE = "Usage: BatchApplication"
+            + " [--pattern <file> | --size <n> --density <p> --seed <n>] [--generations <n>] [--interval <n>]"
+            + " [--snapshot <file>] [--engine neighbor-count|tile|hashlife]"
+            + " [--threads <n>] [--output <file>] [--soups <n>] [--max-period <n>] [--census <file>]"
+            + " [--rule <B/S rulestring>] [--topology infinite|bounded|torus] [--metrics <file>]"
+            + " [--storage heap|off-heap|<file>] [--resume <file>]\n"
+            + "--storage off-heap is limited by -XX:MaxDirectMemorySize, by default the maximum heap size,"
+            + " a board larger than that needs the limit raised or a file";
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try (WritableByteChannel channel = openOutput(options.output);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, "US-ASCII"), BUFFER_SIZE)) {
+            run(options, out);
+        } catch (IOException e) {
+            System.err.println("Batch run failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static void run(Options options, Writer out) throws IOException {
+        if (options.soups > 0) {
+            runEnsemble(options, out);
+            return;
+        }
+        // Closing the engine writes a board in a file out to it, also if the run fails
+        try (EvolutionEngine engine = createEngine(options)) {
+            run(options, out, new Grid(options.size, options.size, engine));
+        }
+    }
+
+    private static void run(Options options, Writer out, Grid grid) throws IOException {
+        if (options.resume != null) {
+            CheckpointReader.restore(options.resume, grid);
+        }
+        else if (options.pattern != null) {
+            grid.initialize(options.pattern);
+        }
+        else {
+            grid.initialize(options.density, options.seed, options.threads);
+        }
+        out.write("# engine=" + options.engine.getName() + " rule=" + options.rule
+                + " topology=" + options.topology.getName() + " threads=" + options.threads
+                + (options.resume != null ? " resume=" + options.resume
+                        : options.pattern != null ? " pattern=" + options.pattern
+                        : " size=" + options.size + " density=" + options.density + " seed=" + options.seed) + "\n");
+        out.write("generation,population,elapsed_ms,generations_per_second\n");
+        writeStatistics(out, grid, 0, 0);
+        long startGeneration = grid.getGeneration();
+
+        CycleDetector cycleDetector = null;
+        if (options.maxPeriod > 0) {
+            cycleDetector = new CycleDetector(options.maxPeriod);
+            grid.setCycleDetector(cycleDetector);
+        }
+        SimulationMetrics metrics = null;
+        MetricsLog metricsLog = null;
+        if (options.metrics != null) {
+            metrics = new SimulationMetrics();
+            metricsLog = new MetricsLog(options.metrics, MAX_METRICS_LOG_BYTES);
+            metrics.setLog(metricsLog, Math.max(1, options.interval > 0 ? options.interval : options.generations));
+            metrics.registerMBean("batch");
+            grid.setMetrics(metrics);
+        }
+        CheckpointWriter snapshots = options.resume != null ? new CheckpointWriter(options.resume, true)
+                : options.snapshot != null ? new CheckpointWriter(options.snapshot) : null;
+        try {
+            long start = System.nanoTime();
+            // A resumed run only evolves the generations that are still missing
+            long remaining = Math.max(0, options.generations - startGeneration);
+            while (remaining > 0 && (cycleDetector == null || !cycleDetector.isSettled())) {
+                long generations = options.interval > 0 ? Math.min(options.interval, remaining) : remaining;
+                long intervalStart = System.nanoTime();
+                if (cycleDetector != null) {
+                    generations = grid.evolveUntilSettled(generations);
+                }
+                else if (metrics != null) {
+                    // Jumps are not recorded in the metrics
+                    for (long i = 0; i < generations; i++) {
+                        grid.evolve();
+                    }
+                }
+                else {
+                    // Jumps let HashLifeEngine advance by powers of two,
+                    // the other engines evolve one generation at a time
+                    grid.jump(generations);
+                }
+                remaining -= generations;
+                long now = System.nanoTime();
+                writeStatistics(out, grid, now - start, generations / seconds(now - intervalStart));
+                if (snapshots != null) {
+                    snapshots.writeDelta(grid);
+                }
+            }
+            if (cycleDetector != null && cycleDetector.isSettled()) {
+                out.write("# settled at generation " + cycleDetector.getFirstGeneration() + " with period "
+                        + cycleDetector.getPeriod() + "\n");
+            }
+            long generations = grid.getGeneration() - startGeneration;
+            double elapsed = seconds(System.nanoTime() - start);
+            out.write(String.format(Locale.ROOT, "# %d generations in %.3f s, %.1f generations per second\n",
+                    generations, elapsed, generations / elapsed));
+            if (options.census != null) {
+                try (Census census = new Census(options.rule, options.threads)) {
+                    census.add(grid);
+                    writeCensus(census, options.census);
+                    out.write("# " + census.getObjectCount() + " objects in the census\n");
+                }
+            }
+        } finally {
+            if (snapshots != null) {
+                snapshots.close();
+            }
+            if (metrics != null) {
+                metrics.unregisterMBean("batch");
+                metricsLog.close();
+            }
+        }
+    }
+
+    private static EvolutionEngine createEngine(Options options) throws IOException {
+        switch (options.storage) {
+            case "heap":
+                return options.topology.createEngine(options.size, options.size, options.engine, options.rule,
+                        options.threads);
+            case "off-heap":
+                return new OffHeapBoardEngine(options.size, options.size, options.topology, options.rule);
+            default:
+                return new OffHeapBoardEngine(options.size, options.size, options.topology, options.rule,
+                        Paths.get(options.storage));
+        }
+    }
+
+    private static void runEnsemble(Options options, Writer out) throws IOException {
+        out.write("# engine=" + options.engine.getName() + " rule=" + options.rule
+                + " topology=" + options.topology.getName() + " threads=" + options.threads
+                + " soups=" + options.soups + " size=" + options.size + " density=" + options.density
+                + " seed=" + options.seed + " generations=" + options.generations + "\n");
+        long start = System.nanoTime();
+        EnsembleRunner runner = new EnsembleRunner(options.engine, options.rule, options.size, options.density,
+                options.generations);
+        runner.setTopology(options.topology);
+        // The workers already keep every thread busy, so each of them takes its census on its own thread
+        Census census = options.census != null ? new Census(options.rule, 1) : null;
+        runner.setCensus(census);
+        EnsembleRunner.Result result = runner.run(options.seed, options.soups, options.threads);
+        double elapsed = seconds(System.nanoTime() - start);
+        result.writeSummary(out);
+        if (census != null) {
+            writeCensus(census, options.census);
+        }
+        out.write(String.format(Locale.ROOT, "# %d soups in %.3f s, %.1f soups per second\n",
+                options.soups, elapsed, options.soups / elapsed));
+    }
+
+    private static void writeCensus(Census census, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            census.writeTo(out);
+        }
+    }
+
+    private static void writeStatistics(Writer out, Grid grid, long elapsedNanos, double generationsPerSecond)
+            throws IOException {
+        out.write(grid.getGeneration() + "," + grid.getPopulation() + "," + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                + "," + String.format(Locale.ROOT, "%.1f", generationsPerSecond) + "\n");
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static WritableByteChannel openOutput(Path output) throws IOException {
+        if (output == null) {
+            return new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        return FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static final class Options {
+        Path pattern;
+        int size = 100;
+        double density = 0.25;
+        long seed = System.nanoTime();
+        long generations = 1000;
+        long interval;
+        Path snapshot;
+        EngineType engine = EngineType.NEIGHBOR_COUNT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output;
+        int soups;
+        int maxPeriod;
+        Path census;
+        Rule rule = Rule.CONWAY;
+        Topology topology = Topology.INFINITE;
+        Path metrics;
+        String storage = "heap";
+        Path resume;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                try {
+                    switch (option) {
+                        case "--pattern":
+                            options.pattern = Paths.get(value);
+                            break;
+                        case "--size":
+                            options.size = Integer.parseInt(value);
+                            break;
+                        case "--density":
+                            options.density = Double.parseDouble(value);
+                            break;
+                        case "--seed":
+                            options.seed = Long.parseLong(value);
+                            break;
+                        case "--generations":
+                            options.generations = Long.parseLong(value);
+                            break;
+                        case "--interval":
+                            options.interval = Long.parseLong(value);
+                            break;
+                        case "--snapshot":
+                            options.snapshot = Paths.get(value);
+                            break;
+                        case "--engine":
+                            options.engine = EngineType.of(value);
+                            break;
+                        case "--threads":
+                            options.threads = Integer.parseInt(value);
+                            break;
+                        case "--output":
+                            options.output = Paths.get(value);
+                            break;
+                        case "--soups":
+                            options.soups = Integer.parseInt(value);
+                            break;
+                        case "--max-period":
+                            options.maxPeriod = Integer.parseInt(value);
+                            break;
+                        case "--census":
+                            options.census = Paths.get(value);
+                            break;
+                        case "--rule":
+                            options.rule = Rule.parse(value);
+                            break;
+                        case "--topology":
+                            options.topology = Topology.of(value);
+                            break;
+                        case "--metrics":
+                            options.metrics = Paths.get(value);
+                            break;
+                        case "--storage":
+                            options.storage = value;
+                            break;
+                        case "--resume":
+                            options.resume = Paths.get(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option: " + option);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+                }
+            }
+            if (options.generations < 0 || options.interval < 0 || options.soups < 0 || options.maxPeriod < 0
+                    || options.size < 1 || options.threads < 1) {
+                throw new IllegalArgumentException("Size and threads must be positive, generations, interval, soups"
+                        + " and the maximum period cannot be negative");
+            }
+            if (options.soups > 0 && (options.metrics != null || !options.storage.equals("heap")
+                    || options.snapshot != null || options.pattern != null)) {
+                throw new IllegalArgumentException("--metrics, --storage, --snapshot and --pattern are only supported"
+                        + " by a single run, not with --soups");
+            }
+            if (options.resume != null && (options.soups > 0 || options.pattern != null || options.snapshot != null)) {
+                throw new IllegalArgumentException("A resumed run starts from its checkpoint file and writes to it, "
+                        + "it cannot be combined with --soups, --pattern or --snapshot");
+            }
+            if (options.topology == Topology.INFINITE) {
+                options.rule.requireNoBirthWithoutNeighbors();
+                if (!options.storage.equals("heap")) {
+                    throw new IllegalArgumentException("Off-heap storage needs a bounded or torus topology");
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Receives the number of live cells in a square block of cells. A block may be reported in several parts,
+ * in which case the populations add up.
+ */
+@FunctionalInterface
+public interface BlockConsumer {
+    void accept(int blockX, int blockY, long population);
+}
@@ -0,0 +1,59 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * The words of 64 cells that the rows of DenseBoardEngine and OffHeapBoardEngine are stored in. A row of a board
+ * takes (columns + 63) / 64 words, framed by a ghost word on either side, and the bits of its last word beyond the
+ * board's width are padding.
+ */
+final class BoardWords {
+    private BoardWords() {
+    }
+
+    /**
+     * Returns the cells of each word of a row that are on the board, indexed by the word's position within the row
+     * including the ghost words, which are masked out entirely
+     */
+    static long[] columnMasks(int columns) {
+        int words = (columns + 63) >>> 6;
+        long[] columnMasks = new long[words + 2];
+        Arrays.fill(columnMasks, 1, words + 1, -1L);
+        if ((columns & 63) != 0) {
+            columnMasks[words] = (1L << (columns & 63)) - 1;
+        }
+        return columnMasks;
+    }
+
+    /**
+     * Returns the bit after the last column of the last word of a row, or 0 if the last word has no padding.
+     * On a torus it holds the cell from the opposite edge while a generation is computed.
+     */
+    static long paddingBit(int columns) {
+        return (columns & 63) != 0 ? 1L << (columns & 63) : 0;
+    }
+
+    /**
+     * Adds the cells that are alive in the next word but not the word as births, and the other way around as deaths
+     */
+    static void recordChanges(long word, long nextWord, int originX, int y, ChangeSet changes) {
+        long births = nextWord & ~word;
+        long deaths = word & ~nextWord;
+        while (births != 0) {
+            changes.addBirth(originX + Long.numberOfTrailingZeros(births), y);
+            births &= births - 1;
+        }
+        while (deaths != 0) {
+            changes.addDeath(originX + Long.numberOfTrailingZeros(deaths), y);
+            deaths &= deaths - 1;
+        }
+    }
+
+    /**
+     * Returns the bits from fromBit up to but not including toBit, either of which may lie outside the word
+     */
+    static long rangeMask(int fromBit, int toBit) {
+        long upTo = toBit >= 64 ? -1L : (1L << toBit) - 1;
+        return fromBit <= 0 ? upTo : upTo & (-1L << fromBit);
+    }
+}
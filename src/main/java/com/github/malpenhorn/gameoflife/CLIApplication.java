@@ -8,14 +8,16 @@ public class CLIApplication {
         Grid grid = new Grid(GRID_COLUMNS, GRID_ROWS);
         grid.initialize(0.25);
         GridPrinter printer = new CLIGridPrinter();
+        ChangeSet changes = new ChangeSet();
+        printer.print(grid);
         while (true) {
-            printer.print(grid);
-            grid.evolve();
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
+            grid.evolve(changes);
+            printer.printChanges(grid, changes);
         }
     }
 }
@@ -1,41 +1,222 @@
 package com.github.malpenhorn.gameoflife;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Draws the visible grid on an ANSI terminal, packing several cells into each character with Unicode block or
+ * Braille glyphs. Every frame is built in a reusable byte buffer holding only the characters that differ from the
+ * previous frame, each preceded by a cursor move when it does not follow the previous one, and is written with a
+ * single write and flush.
+ */
 public class CLIGridPrinter implements GridPrinter {
+    private final static byte[] CLEAR_SCREEN = ascii("\u001b[2J");
+    private final static byte[] CLEAR_TO_END_OF_LINE = ascii("\u001b[K");
+
+    /**
+     * The glyphs cells are drawn with, and how many cells wide and high each character is
+     */
+    public enum Glyphs {
+        /**
+         * Two cells per character, one above the other
+         */
+        HALF_BLOCK(1, 2, " ", "\u2580", "\u2584", "\u2588"),
+        /**
+         * Four cells per character in a 2x2 square
+         */
+        QUADRANT(2, 2, " ", "\u2598", "\u259D", "\u2580", "\u2596", "\u258C", "\u259E", "\u259B",
+                "\u2597", "\u259A", "\u2590", "\u259C", "\u2584", "\u2599", "\u259F", "\u2588"),
+        /**
+         * Eight cells per character in a 2x4 square of Braille dots
+         */
+        BRAILLE(2, 4);
+
+        private final int width;
+        private final int height;
+        // The UTF-8 bytes of each glyph, indexed by the cells within the character with bit y * width + x
+        private final byte[][] glyphs;
+
+        Glyphs(int width, int height, String... glyphs) {
+            this.width = width;
+            this.height = height;
+            this.glyphs = new byte[1 << (width * height)][];
+            for (int cells = 0; cells < this.glyphs.length; cells++) {
+                String glyph = glyphs.length > 0 ? glyphs[cells] : String.valueOf((char) (0x2800 + brailleDots(cells)));
+                this.glyphs[cells] = glyph.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Braille numbers its dots down the left column first and keeps the bottom row for dots 7 and 8
+         */
+        private static int brailleDots(int cells) {
+            final int[] dots = {0x01, 0x08, 0x02, 0x10, 0x04, 0x20, 0x40, 0x80};
+            int pattern = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((cells & (1 << bit)) != 0) {
+                    pattern |= dots[bit];
+                }
+            }
+            return pattern;
+        }
+    }
+
+    private final OutputStream out;
+    private final Glyphs glyphs;
+    private final FrameBuffer frame = new FrameBuffer();
+
+    private int characterColumns;
+    private int characterRows;
+    // The cells within each character on screen, and in the frame being printed
+    private int[] shown = new int[0];
+    private int[] characters = new int[0];
+
+    public CLIGridPrinter() {
+        this(System.out, Glyphs.HALF_BLOCK);
+    }
+
+    public CLIGridPrinter(OutputStream out, Glyphs glyphs) {
+        this.out = out;
+        this.glyphs = glyphs;
+    }
+
     @Override
     public void print(Grid grid) {
-        int[][] printableGrid = getPrintableGrid(grid);
-        for (int y = 0; y < grid.getVisibleRows(); y++) {
-            for (int x = 0; x < grid.getVisibleColumns(); x++) {
-                if (printableGrid[x][y] == 0) { // The cell is dead
-                    System.out.print(" . ");
-                }
-                else {
-                    System.out.print(" * "); // The cell is live
-                }
+        resize(grid);
+        Arrays.fill(characters, 0);
+        grid.forEachLiveCellIn(0, 0, grid.getVisibleColumns(), grid.getVisibleRows(), this::toggleCell);
+        flushFrame(grid);
+    }
+
+    /**
+     * Toggles only the changed cells, as long as the size of the grid is the same as in the previous frame
+     */
+    @Override
+    public void printChanges(Grid grid, ChangeSet changes) {
+        if (characterColumns != charactersFor(grid.getVisibleColumns(), glyphs.width)
+                || characterRows != charactersFor(grid.getVisibleRows(), glyphs.height)) {
+            print(grid);
+            return;
+        }
+        int columns = grid.getVisibleColumns();
+        int rows = grid.getVisibleRows();
+        CellConsumer toggleVisible = (x, y) -> {
+            if (x >= 0 && x < columns && y >= 0 && y < rows) {
+                toggleCell(x, y);
             }
-            System.out.println();
+        };
+        changes.forEachBirth(toggleVisible);
+        changes.forEachDeath(toggleVisible);
+        flushFrame(grid);
+    }
+
+    private void resize(Grid grid) {
+        int columns = charactersFor(grid.getVisibleColumns(), glyphs.width);
+        int rows = charactersFor(grid.getVisibleRows(), glyphs.height);
+        if (columns != characterColumns || rows != characterRows) {
+            characterColumns = columns;
+            characterRows = rows;
+            characters = new int[columns * rows];
+            shown = new int[columns * rows];
+            // Nothing on screen matches, so the whole grid is drawn on a cleared screen
+            Arrays.fill(shown, -1);
+            frame.append(CLEAR_SCREEN);
         }
-        System.out.println("Generation: " + grid.getGeneration());
-        System.out.println("Live cells: " + grid.getLiveCells().size());
-        System.out.println("______________________________");
     }
 
-    private int[][] getPrintableGrid(Grid grid) {
-        int[][] printableGrid = new int[grid.getVisibleColumns()][grid.getVisibleRows()];
-        for (Cell cell : grid.getLiveCells()) {
-            if (isCellWithinTheVisibleGrid(grid, cell)) {
-                printableGrid[cell.getX()][cell.getY()] = 1;
+    private void toggleCell(int x, int y) {
+        int column = x / glyphs.width;
+        int row = y / glyphs.height;
+        characters[row * characterColumns + column] ^= 1 << ((y % glyphs.height) * glyphs.width + x % glyphs.width);
+    }
+
+    private void flushFrame(Grid grid) {
+        for (int row = 0; row < characterRows; row++) {
+            int cursorColumn = -1;
+            for (int column = 0; column < characterColumns; column++) {
+                int i = row * characterColumns + column;
+                if (characters[i] != shown[i]) {
+                    if (column != cursorColumn) {
+                        frame.moveCursor(row, column);
+                    }
+                    frame.append(glyphs.glyphs[characters[i]]);
+                    shown[i] = characters[i];
+                    cursorColumn = column + 1;
+                }
             }
         }
-        return printableGrid;
+        frame.moveCursor(characterRows, 0);
+        frame.append(ascii("Generation: " + grid.getGeneration()));
+        frame.append(CLEAR_TO_END_OF_LINE);
+        frame.moveCursor(characterRows + 1, 0);
+        frame.append(ascii("Live cells: " + grid.getPopulation()));
+        frame.append(CLEAR_TO_END_OF_LINE);
+        frame.append((byte) '\n');
+        try {
+            frame.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private boolean isCellWithinTheVisibleGrid(Grid grid, Cell cell) {
-        int x = cell.getX();
-        int y = cell.getY();
-        if (x >= 0 && x < grid.getVisibleColumns() && y >= 0 && y < grid.getVisibleRows()) {
-            return true;
+    private static int charactersFor(int cells, int cellsPerCharacter) {
+        return (cells + cellsPerCharacter - 1) / cellsPerCharacter;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable byte buffer that is reused for every frame
+     */
+    private static final class FrameBuffer {
+        private byte[] bytes = new byte[4096];
+        private int size;
+
+        void append(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+
+        void append(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        /**
+         * Moves the cursor to the zero-based row and column with the ANSI escape ESC [ row ; column H
+         */
+        void moveCursor(int row, int column) {
+            append((byte) 0x1b);
+            append((byte) '[');
+            appendNumber(row + 1);
+            append((byte) ';');
+            appendNumber(column + 1);
+            append((byte) 'H');
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+            out.flush();
+            size = 0;
+        }
+
+        private void appendNumber(int number) {
+            if (number >= 10) {
+                appendNumber(number / 10);
+            }
+            append((byte) ('0' + number % 10));
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
         }
-        return false;
     }
 }
@@ -1,7 +1,5 @@
 package com.github.malpenhorn.gameoflife;
 
-import java.util.Objects;
-
 public class Cell {
     private int x;
     private int y;
@@ -19,6 +17,30 @@ public class Cell {
         return y;
     }
 
+    /**
+     * Packs the coordinates into a single long, x in the high and y in the low 32 bits
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Scrambles a packed cell so that neighboring cells spread out over a hash table
+     */
+    static long mix(long packed) {
+        long h = (packed ^ (packed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -30,6 +52,6 @@ public class Cell {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return (int) mix(pack(x, y));
     }
 }
@@ -0,0 +1,9 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Receives cell coordinates without boxing them into Cell objects
+ */
+@FunctionalInterface
+public interface CellConsumer {
+    void accept(int x, int y);
+}
@@ -0,0 +1,114 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.function.Consumer;
+
+import static com.github.malpenhorn.gameoflife.TileEngine.TILE_SHIFT;
+import static com.github.malpenhorn.gameoflife.TileEngine.TILE_SIZE;
+
+/**
+ * Spatial index of live cells as 64x64 bitmaps keyed by tile position, so that region queries only visit the tiles
+ * overlapping the region, regardless of how many cells live elsewhere. It is kept up to date one cell at a time as
+ * cells are born and die, and every tile counts its cells so zoomed out views can use whole tiles.
+ */
+final class CellIndex {
+    private final LongObjectMap<Bucket> buckets = new LongObjectMap<>();
+
+    void clear() {
+        buckets.clear();
+    }
+
+    void add(int x, int y) {
+        long position = Cell.pack(x >> TILE_SHIFT, y >> TILE_SHIFT);
+        Bucket bucket = buckets.get(position);
+        if (bucket == null) {
+            bucket = new Bucket(x >> TILE_SHIFT, y >> TILE_SHIFT);
+            buckets.put(position, bucket);
+        }
+        long cell = 1L << (x & (TILE_SIZE - 1));
+        if ((bucket.rows[y & (TILE_SIZE - 1)] & cell) == 0) {
+            bucket.rows[y & (TILE_SIZE - 1)] |= cell;
+            bucket.population++;
+        }
+    }
+
+    void remove(int x, int y) {
+        long position = Cell.pack(x >> TILE_SHIFT, y >> TILE_SHIFT);
+        Bucket bucket = buckets.get(position);
+        long cell = 1L << (x & (TILE_SIZE - 1));
+        if (bucket != null && (bucket.rows[y & (TILE_SIZE - 1)] & cell) != 0) {
+            bucket.rows[y & (TILE_SIZE - 1)] &= ~cell;
+            if (--bucket.population == 0) {
+                buckets.remove(position);
+            }
+        }
+    }
+
+    /**
+     * Visits the live cells with x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1
+     */
+    void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        forEachBucketIn(x0, y0, x1, y1,
+                bucket -> TileRows.visitClipped(bucket.rows, bucket.x, bucket.y, x0, y0, x1, y1, consumer));
+    }
+
+    /**
+     * Reports the population of every tile that lies within a block and the region as a whole,
+     * smaller blocks and tiles on the edge of the region are counted row by row
+     */
+    void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        forEachBucketIn(x0, y0, x1, y1, bucket -> {
+            long originX = (long) bucket.x << TILE_SHIFT;
+            long originY = (long) bucket.y << TILE_SHIFT;
+            if (shift >= TILE_SHIFT && originX >= x0 && originY >= y0
+                    && originX + TILE_SIZE <= x1 && originY + TILE_SIZE <= y1) {
+                consumer.accept(bucket.x >> (shift - TILE_SHIFT), bucket.y >> (shift - TILE_SHIFT), bucket.population);
+            }
+            else {
+                TileRows.countClipped(bucket.rows, bucket.x, bucket.y, x0, y0, x1, y1, shift, consumer);
+            }
+        });
+    }
+
+    /**
+     * Only visits the tiles that overlap the region, looking them up directly when the region is small
+     */
+    private void forEachBucketIn(int x0, int y0, int x1, int y1, Consumer<Bucket> action) {
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int tileX0 = x0 >> TILE_SHIFT;
+        int tileY0 = y0 >> TILE_SHIFT;
+        int tileX1 = (x1 - 1) >> TILE_SHIFT;
+        int tileY1 = (y1 - 1) >> TILE_SHIFT;
+        long tilesInRegion = ((long) tileX1 - tileX0 + 1) * ((long) tileY1 - tileY0 + 1);
+        if (tilesInRegion <= buckets.size()) {
+            for (int tileY = tileY0; tileY <= tileY1; tileY++) {
+                for (int tileX = tileX0; tileX <= tileX1; tileX++) {
+                    Bucket bucket = buckets.get(Cell.pack(tileX, tileY));
+                    if (bucket != null) {
+                        action.accept(bucket);
+                    }
+                }
+            }
+        }
+        else {
+            buckets.forEachValue(bucket -> {
+                if (bucket.x >= tileX0 && bucket.x <= tileX1 && bucket.y >= tileY0 && bucket.y <= tileY1) {
+                    action.accept(bucket);
+                }
+            });
+        }
+    }
+
+    private static final class Bucket {
+        final int x;
+        final int y;
+        final long[] rows = new long[TILE_SIZE];
+        int population;
+
+        Bucket(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * Adapts a LongCellSet to Set&lt;Cell&gt;. Cell objects are only created while iterating.
+ */
+class CellSetView extends AbstractSet<Cell> {
+    private final LongCellSet cells;
+
+    CellSetView(LongCellSet cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    public int size() {
+        return cells.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Cell)) {
+            return false;
+        }
+        Cell cell = (Cell) o;
+        return cells.contains(cell.getX(), cell.getY());
+    }
+
+    @Override
+    public boolean add(Cell cell) {
+        return cells.add(cell.getX(), cell.getY());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Cell)) {
+            return false;
+        }
+        Cell cell = (Cell) o;
+        return cells.remove(cell.getX(), cell.getY());
+    }
+
+    @Override
+    public void clear() {
+        cells.clear();
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+        return cells.cellIterator();
+    }
+}
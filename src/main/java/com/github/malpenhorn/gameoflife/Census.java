@@ -0,0 +1,531 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the objects of a settled grid, such as blocks, blinkers and gliders, by their apgcode.
+ * <p>
+ * The live cells are split into connected components, cells that touch including diagonally, with a union-find over the
+ * cells sorted column by column, in which the neighbors of a cell are found by walking the array. The unions are lock
+ * free and done in parallel on a ForkJoinPool with a parallelism above one. Each component is then run on its own for
+ * up to MAX_PERIOD generations to find its period and whether it moves, and named with the apgcode used by Catagolue:
+ * xs + population for still lifes, xp + period for oscillators and xq + period for spaceships, followed by the shortest
+ * and then alphabetically first extended Wechsler encoding over all phases, rotations and reflections.
+ * <p>
+ * The encoding of a shape under its best rotation or reflection is also the key of a lookup table of the codes
+ * that have been found, so each distinct shape is only run once. Components that do not repeat on their own within
+ * MAX_PERIOD generations, such as parts of a larger object or of an active region, are counted as zz_s + population,
+ * and components of more than MAX_OBJECT_CELLS cells as ov_s + population. Objects whose cells do not all touch,
+ * such as the lightweight spaceship, are counted as their parts.
+ * <p>
+ * A census can be added to from several threads, for example by the workers of an ensemble. A census with a
+ * parallelism above one has a ForkJoinPool of its own, which is shut down when it is closed.
+ */
+public class Census implements AutoCloseable {
+    public final static int MAX_PERIOD = 30;
+    public final static int MAX_OBJECT_CELLS = 256;
+    // The number of cells or components a fork join task handles without splitting further
+    private final static int TASK_SIZE = 1 << 14;
+    // Flips the sign of y in a packed cell, so that packed cells sort by x and then by y
+    private final static long Y_SIGN = 1L << 31;
+    private final static long NEXT_COLUMN = 1L << 32;
+    // A full 8 by 8 square, which is looked up by its encoding like larger objects
+    private final static long NO_BITMAP = -1L;
+    private final static String WECHSLER_DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+    private final static Map<String, String> NAMES = new HashMap<>();
+
+    static {
+        NAMES.put("xs4_33", "block");
+        NAMES.put("xs6_696", "beehive");
+        NAMES.put("xs7_2596", "loaf");
+        NAMES.put("xs5_253", "boat");
+        NAMES.put("xs6_356", "ship");
+        NAMES.put("xs4_252", "tub");
+        NAMES.put("xs8_6996", "pond");
+        NAMES.put("xs6_25a4", "barge");
+        NAMES.put("xp2_7", "blinker");
+        NAMES.put("xp2_7e", "toad");
+        NAMES.put("xp2_318c", "beacon");
+        NAMES.put("xq4_153", "glider");
+    }
+
+    private final ForkJoinPool pool;
+    private final Rule rule;
+    private final Map<String, String> codesByShape = new ConcurrentHashMap<>();
+    private final Map<Long, String> codesByBitmap = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    public Census() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism the number of threads finding and classifying objects, 1 does it on the calling thread
+     */
+    public Census(int parallelism) {
+        this(Rule.CONWAY, parallelism);
+    }
+
+    /**
+     * @param rule the rule the objects are run by to find their periods
+     */
+    public Census(Rule rule, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.rule = rule;
+    }
+
+    /**
+     * Returns the common name of an object in Conway's Game of Life, or null if it has none
+     */
+    public static String getName(String apgcode) {
+        return NAMES.get(apgcode);
+    }
+
+    /**
+     * Counts the objects among the grid's live cells
+     */
+    public void add(Grid grid) {
+        add(grid.getLiveCellSet());
+    }
+
+    public void add(LongCellSet liveCells) {
+        if (liveCells.isEmpty()) {
+            return;
+        }
+        // Sorted with the sign bit of y flipped, the cells lie column by column from top to bottom,
+        // so the neighbors below and in the next column are found by walking the array instead of by lookups
+        long[] keys = new long[liveCells.size()];
+        int[] size = new int[1];
+        liveCells.forEachPacked(cell -> keys[size[0]++] = cell ^ Y_SIGN);
+        if (pool != null) {
+            // Sorts on this census' pool, parallelSort forks its tasks into the pool it runs in
+            pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort(keys)));
+        }
+        else {
+            Arrays.sort(keys);
+        }
+
+        AtomicIntegerArray parent = new AtomicIntegerArray(keys.length);
+        forEachInRange(keys.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                parent.set(i, i);
+            }
+        });
+        // Every pair of touching cells is joined once, from the cell on the left or above
+        forEachInRange(keys.length, (from, to) -> {
+            int next = firstAtLeast(keys, keys[from] + NEXT_COLUMN - 1);
+            for (int i = from; i < to; i++) {
+                long key = keys[i];
+                if (i + 1 < keys.length && keys[i + 1] == key + 1) {
+                    union(parent, i, i + 1);
+                }
+                while (next < keys.length && keys[next] < key + NEXT_COLUMN - 1) {
+                    next++;
+                }
+                for (int j = next; j < keys.length && keys[j] <= key + NEXT_COLUMN + 1; j++) {
+                    union(parent, i, j);
+                }
+            }
+        });
+        int[] roots = new int[keys.length];
+        forEachInRange(keys.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                roots[i] = find(parent, i);
+            }
+        });
+
+        // Sorts the cells by component, so that the cells of a component are adjacent in order
+        int[] start = new int[keys.length + 1];
+        for (int root : roots) {
+            start[root + 1]++;
+        }
+        int components = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (start[i + 1] > 0) {
+                components++;
+            }
+            start[i + 1] += start[i];
+        }
+        int[] componentStart = new int[components + 1];
+        for (int i = 0, component = 0; i < keys.length; i++) {
+            if (start[i + 1] > start[i]) {
+                componentStart[component++] = start[i];
+            }
+        }
+        componentStart[components] = keys.length;
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[start[roots[i]]++] = keys[i] ^ Y_SIGN;
+        }
+
+        forEachInRange(components, (from, to) -> {
+            for (int component = from; component < to; component++) {
+                String code = classify(Arrays.copyOfRange(order, componentStart[component],
+                        componentStart[component + 1]));
+                counts.computeIfAbsent(code, key -> new LongAdder()).increment();
+            }
+        });
+    }
+
+    /**
+     * Shuts down the threads finding and classifying objects, the counts can still be read afterwards
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Adds the counts of another census to this one
+     */
+    public void addAll(Census other) {
+        for (Map.Entry<String, LongAdder> entry : other.counts.entrySet()) {
+            counts.computeIfAbsent(entry.getKey(), key -> new LongAdder()).add(entry.getValue().sum());
+        }
+    }
+
+    public long getCount(String apgcode) {
+        LongAdder count = counts.get(apgcode);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Returns the number of objects of every apgcode, most common first
+     */
+    public Map<String, Long> getCounts() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey()) : Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    public long getObjectCount() {
+        long objects = 0;
+        for (LongAdder count : counts.values()) {
+            objects += count.sum();
+        }
+        return objects;
+    }
+
+    /**
+     * Writes one CSV line per apgcode with its name and number of objects, most common first
+     */
+    public void writeTo(Writer out) throws IOException {
+        out.write("apgcode,name,count\n");
+        for (Map.Entry<String, Long> entry : getCounts().entrySet()) {
+            String name = getName(entry.getKey());
+            out.write(entry.getKey() + "," + (name != null ? name : "") + "," + entry.getValue() + "\n");
+        }
+    }
+
+    private String classify(long[] cells) {
+        if (cells.length > MAX_OBJECT_CELLS) {
+            return "ov_s" + cells.length;
+        }
+        // Most objects fit in 8 by 8 cells, whose bitmap looks them up without encoding them
+        long bitmap = bitmapOf(cells);
+        String code = bitmap != NO_BITMAP ? codesByBitmap.get(bitmap) : null;
+        if (code == null) {
+            code = codesByShape.get(canonicalEncoding(cells));
+            if (code == null) {
+                code = findCode(cells);
+            }
+            if (bitmap != NO_BITMAP) {
+                codesByBitmap.putIfAbsent(bitmap, code);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Returns the cells as rows of eight bits from the top left corner of the object, or NO_BITMAP if it is larger
+     */
+    private static long bitmapOf(long[] cells) {
+        int minX = minX(cells);
+        int minY = minY(cells);
+        long bitmap = 0;
+        for (long cell : cells) {
+            int x = Cell.unpackX(cell) - minX;
+            int y = Cell.unpackY(cell) - minY;
+            if (x >= 8 || y >= 8) {
+                return NO_BITMAP;
+            }
+            bitmap |= 1L << (y * 8 + x);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Runs the object on its own until a phase repeats, and remembers the code for the shape of every phase.
+     * If none repeats only the object's own shape is remembered, as its later phases may still settle on their own
+     * within MAX_PERIOD generations and have other populations.
+     */
+    private String findCode(long[] cells) {
+        List<String> phases = new ArrayList<>();
+        phases.add(canonicalEncoding(cells));
+        long[] first = normalize(cells);
+        NeighborCountEngine engine = new NeighborCountEngine(rule);
+        for (long cell : cells) {
+            engine.add(Cell.unpackX(cell), Cell.unpackY(cell));
+        }
+        String code = "zz_s" + cells.length;
+        for (int generation = 1; generation <= MAX_PERIOD && engine.getPopulation() > 0; generation++) {
+            engine.evolve();
+            long[] phase = new long[(int) engine.getPopulation()];
+            int[] size = new int[1];
+            engine.forEachLiveCell((x, y) -> phase[size[0]++] = Cell.pack(x, y));
+            if (Arrays.equals(first, normalize(phase))) {
+                String best = phases.get(0);
+                for (String encoding : phases) {
+                    best = better(encoding, best);
+                }
+                boolean moved = minX(phase) != minX(cells) || minY(phase) != minY(cells);
+                code = (generation == 1 ? "xs" + cells.length : (moved ? "xq" : "xp") + generation) + "_" + best;
+                break;
+            }
+            phases.add(canonicalEncoding(phase));
+        }
+        if (code.startsWith("zz")) {
+            codesByShape.putIfAbsent(phases.get(0), code);
+        }
+        else {
+            for (String encoding : phases) {
+                codesByShape.putIfAbsent(encoding, code);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Returns the best extended Wechsler encoding of the cells under the eight rotations and reflections
+     */
+    static String canonicalEncoding(long[] cells) {
+        String best = null;
+        long[] transformed = new long[cells.length];
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            for (int i = 0; i < cells.length; i++) {
+                int x = Cell.unpackX(cells[i]);
+                int y = Cell.unpackY(cells[i]);
+                if ((symmetry & 4) != 0) {
+                    int swap = x;
+                    x = y;
+                    y = swap;
+                }
+                transformed[i] = Cell.pack((symmetry & 1) != 0 ? -x : x, (symmetry & 2) != 0 ? -y : y);
+            }
+            String encoding = encode(transformed);
+            best = best == null ? encoding : better(encoding, best);
+        }
+        return best;
+    }
+
+    /**
+     * Encodes the cells in strips of five rows, each column of a strip as a digit from 0 to v, with zeros
+     * abbreviated to w for two, x for three and y plus a digit for four to 39, and strips separated by z
+     */
+    static String encode(long[] cells) {
+        int minX = minX(cells);
+        int minY = minY(cells);
+        int width = 0;
+        int height = 0;
+        for (long cell : cells) {
+            width = Math.max(width, Cell.unpackX(cell) - minX + 1);
+            height = Math.max(height, Cell.unpackY(cell) - minY + 1);
+        }
+        int strips = (height + 4) / 5;
+        int[] columns = new int[strips * width];
+        for (long cell : cells) {
+            int x = Cell.unpackX(cell) - minX;
+            int y = Cell.unpackY(cell) - minY;
+            columns[(y / 5) * width + x] |= 1 << (y % 5);
+        }
+        StringBuilder encoding = new StringBuilder();
+        for (int strip = 0; strip < strips; strip++) {
+            if (strip > 0) {
+                encoding.append('z');
+            }
+            int zeros = 0;
+            for (int x = 0; x < width; x++) {
+                int column = columns[strip * width + x];
+                if (column == 0) {
+                    zeros++;
+                }
+                else {
+                    appendZeros(encoding, zeros);
+                    zeros = 0;
+                    encoding.append(WECHSLER_DIGITS.charAt(column));
+                }
+            }
+        }
+        return encoding.toString();
+    }
+
+    private static void appendZeros(StringBuilder encoding, int zeros) {
+        while (zeros >= 40) {
+            encoding.append("yz");
+            zeros -= 39;
+        }
+        if (zeros >= 4) {
+            encoding.append('y').append(WECHSLER_DIGITS.charAt(zeros - 4));
+        }
+        else if (zeros == 3) {
+            encoding.append('x');
+        }
+        else if (zeros == 2) {
+            encoding.append('w');
+        }
+        else if (zeros == 1) {
+            encoding.append('0');
+        }
+    }
+
+    /**
+     * Returns the shorter encoding, or the alphabetically first of two of the same length
+     */
+    private static String better(String a, String b) {
+        if (a.length() != b.length()) {
+            return a.length() < b.length() ? a : b;
+        }
+        return a.compareTo(b) < 0 ? a : b;
+    }
+
+    private static long[] normalize(long[] cells) {
+        int minX = minX(cells);
+        int minY = minY(cells);
+        long[] normalized = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            normalized[i] = Cell.pack(Cell.unpackX(cells[i]) - minX, Cell.unpackY(cells[i]) - minY);
+        }
+        Arrays.sort(normalized);
+        return normalized;
+    }
+
+    private static int minX(long[] cells) {
+        int minX = Integer.MAX_VALUE;
+        for (long cell : cells) {
+            minX = Math.min(minX, Cell.unpackX(cell));
+        }
+        return minX;
+    }
+
+    private static int minY(long[] cells) {
+        int minY = Integer.MAX_VALUE;
+        for (long cell : cells) {
+            minY = Math.min(minY, Cell.unpackY(cell));
+        }
+        return minY;
+    }
+
+    /**
+     * Joins the components of two cells by linking the higher root to the lower one, retrying when another
+     * thread has linked one of the roots first
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b) {
+                return;
+            }
+            if (a < b) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+            if (parent.compareAndSet(a, a, b)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the root of a cell's component, halving the path on the way
+     */
+    private static int find(AtomicIntegerArray parent, int i) {
+        while (true) {
+            int p = parent.get(i);
+            if (p == i) {
+                return i;
+            }
+            int grandparent = parent.get(p);
+            if (p != grandparent) {
+                parent.compareAndSet(i, p, grandparent);
+            }
+            i = grandparent;
+        }
+    }
+
+    private static int firstAtLeast(long[] keys, long key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    private void forEachInRange(int size, RangeAction action) {
+        if (pool != null && size > TASK_SIZE) {
+            pool.invoke(new RangeTask(action, 0, size));
+        }
+        else {
+            action.run(0, size);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs an action over a range, splitting it in halves that idle workers can steal
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeAction action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TASK_SIZE) {
+                action.run(from, to);
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(action, from, middle), new RangeTask(action, middle, to));
+            }
+        }
+    }
+}
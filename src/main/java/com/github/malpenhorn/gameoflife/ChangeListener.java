@@ -0,0 +1,9 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Is told about the cells that were born and died every time a grid evolves by one generation
+ */
+@FunctionalInterface
+public interface ChangeListener {
+    void onChanges(Grid grid, ChangeSet changes);
+}
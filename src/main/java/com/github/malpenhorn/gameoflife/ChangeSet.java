@@ -0,0 +1,91 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * The cells that were born and the cells that died in one generation, as arrays of packed coordinates.
+ * Engines fill it as a by-product of evolving, so printers and listeners can follow the grid by its changes
+ * instead of comparing full generations. A change set is cleared and reused for every generation.
+ */
+public class ChangeSet {
+    private final static int INITIAL_CAPACITY = 64;
+
+    private long[] births = new long[INITIAL_CAPACITY];
+    private long[] deaths = new long[INITIAL_CAPACITY];
+    private int birthCount;
+    private int deathCount;
+    private long generation;
+
+    public void clear() {
+        birthCount = 0;
+        deathCount = 0;
+    }
+
+    public void addBirth(int x, int y) {
+        addBirth(Cell.pack(x, y));
+    }
+
+    public void addBirth(long cell) {
+        if (birthCount == births.length) {
+            births = Arrays.copyOf(births, birthCount * 2);
+        }
+        births[birthCount++] = cell;
+    }
+
+    public void addDeath(int x, int y) {
+        addDeath(Cell.pack(x, y));
+    }
+
+    public void addDeath(long cell) {
+        if (deathCount == deaths.length) {
+            deaths = Arrays.copyOf(deaths, deathCount * 2);
+        }
+        deaths[deathCount++] = cell;
+    }
+
+    public int getBirthCount() {
+        return birthCount;
+    }
+
+    public int getDeathCount() {
+        return deathCount;
+    }
+
+    /**
+     * Returns the packed coordinates of the i-th birth, see Cell.unpackX and Cell.unpackY
+     */
+    public long getBirth(int i) {
+        return births[i];
+    }
+
+    public long getDeath(int i) {
+        return deaths[i];
+    }
+
+    public void forEachBirth(CellConsumer consumer) {
+        for (int i = 0; i < birthCount; i++) {
+            consumer.accept(Cell.unpackX(births[i]), Cell.unpackY(births[i]));
+        }
+    }
+
+    public void forEachDeath(CellConsumer consumer) {
+        for (int i = 0; i < deathCount; i++) {
+            consumer.accept(Cell.unpackX(deaths[i]), Cell.unpackY(deaths[i]));
+        }
+    }
+
+    public boolean isEmpty() {
+        return birthCount == 0 && deathCount == 0;
+    }
+
+    /**
+     * Returns the generation the changes led to
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    void setGeneration(long generation) {
+        this.generation = generation;
+    }
+}
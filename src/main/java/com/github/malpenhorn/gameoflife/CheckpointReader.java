@@ -0,0 +1,107 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Restores a grid from a checkpoint file written by CheckpointWriter. Only the last complete snapshot and the deltas
+ * after it are decoded, straight from the memory-mapped file into the set of live cells.
+ */
+public final class CheckpointReader {
+    private CheckpointReader() {
+    }
+
+    /**
+     * Replaces the live cells and generation of the grid with the latest complete checkpoint in the file
+     */
+    public static void restore(Path file, Grid grid) throws IOException {
+        try (MappedBytes in = new MappedBytes(file)) {
+            Records records = scan(in, file);
+            if (records.snapshot == -1) {
+                throw new IOException("No complete checkpoint in " + file);
+            }
+
+            in.seek(records.snapshot);
+            LongCellSet liveCells = null;
+            long generation = 0;
+            while (in.position() < records.end) {
+                int type = in.next();
+                in.readLong();
+                generation = in.readLong();
+                if (type == CheckpointWriter.SNAPSHOT) {
+                    long count = in.readVarLong();
+                    liveCells = new LongCellSet((int) count);
+                    readCells(in, count, liveCells, true);
+                }
+                else {
+                    readCells(in, in.readVarLong(), liveCells, true);
+                    readCells(in, in.readVarLong(), liveCells, false);
+                }
+            }
+            grid.initialize(liveCells);
+            grid.setGeneration(generation);
+        }
+    }
+
+    /**
+     * Returns the length of the file up to the end of its last complete record, any record after it was cut off
+     * by a crash
+     */
+    static long completeLength(Path file) throws IOException {
+        try (MappedBytes in = new MappedBytes(file)) {
+            return scan(in, file).end;
+        }
+    }
+
+    /**
+     * Checks the header and finds the last snapshot and the end of the last complete record without decoding any cells
+     */
+    private static Records scan(MappedBytes in, Path file) throws IOException {
+        int magic = (in.next() << 24) | (in.next() << 16) | (in.next() << 8) | in.next();
+        if (magic != CheckpointWriter.MAGIC) {
+            throw new IOException("Not a checkpoint file: " + file);
+        }
+        int version = in.next();
+        if (version != CheckpointWriter.VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+
+        Records records = new Records();
+        records.end = in.position();
+        while (records.end + CheckpointWriter.RECORD_HEADER_SIZE <= in.size()) {
+            in.seek(records.end);
+            int type = in.next();
+            long length = in.readLong();
+            if (length <= 0 || length > in.size() - in.position()) {
+                break;
+            }
+            if (type == CheckpointWriter.SNAPSHOT) {
+                records.snapshot = records.end;
+            }
+            else if (type != CheckpointWriter.DELTA) {
+                throw new IOException("Unknown checkpoint record type " + type);
+            }
+            records.end = in.position() + length;
+        }
+        return records;
+    }
+
+    private static void readCells(MappedBytes in, long count, LongCellSet liveCells, boolean alive) throws IOException {
+        long cell = 0;
+        for (long i = 0; i < count; i++) {
+            cell += in.readVarLong();
+            if (alive) {
+                liveCells.add(cell);
+            }
+            else {
+                liveCells.remove(cell);
+            }
+        }
+    }
+
+    private static final class Records {
+        // The position of the last snapshot, or -1 if there is none
+        long snapshot = -1;
+        long end;
+    }
+}
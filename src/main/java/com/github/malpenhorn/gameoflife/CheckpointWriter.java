@@ -0,0 +1,181 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes checkpoints of a grid to a file, so a long simulation can be resumed with CheckpointReader.
+ * The file starts with a full snapshot of the live cells and the generation, after which writeDelta only
+ * appends the births and deaths since the previous checkpoint. Cells are written as sorted packed coordinates,
+ * each stored as the variable length difference to the one before, which takes a few bytes per cell.
+ * <p>
+ * Every record is forced to disk before its length is filled in, so a record cut off by a crash is
+ * recognized and ignored on restore, resuming from the last complete checkpoint instead.
+ */
+public class CheckpointWriter implements Closeable {
+    final static int MAGIC = 0x474F4C43;
+    final static int VERSION = 1;
+    final static int SNAPSHOT = 1;
+    final static int DELTA = 2;
+    // Record type byte followed by the body length
+    final static int RECORD_HEADER_SIZE = 1 + 8;
+
+    private final static int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long[] checkpointCells;
+
+    public CheckpointWriter(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Creates or truncates the file, or with append opens an existing checkpoint file to continue it, for instance
+     * after resuming from it with CheckpointReader. A record that a crash left incomplete is cut off before appending,
+     * and the first checkpoint appended is a full snapshot.
+     */
+    public CheckpointWriter(Path file, boolean append) throws IOException {
+        if (append) {
+            long length = CheckpointReader.completeLength(file);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.truncate(length);
+            channel.position(length);
+            return;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        flush();
+        channel.force(true);
+    }
+
+    /**
+     * Appends a full snapshot of the grid, restoring never needs to read anything before it
+     */
+    public void writeSnapshot(Grid grid) throws IOException {
+        long[] cells = sortedLiveCells(grid);
+        long start = beginRecord(SNAPSHOT, grid.getGeneration());
+        writeVarLong(cells.length);
+        writeCells(cells, null);
+        endRecord(start);
+        checkpointCells = cells;
+    }
+
+    /**
+     * Appends the births and deaths since the previous checkpoint, or a full snapshot if there is none yet
+     */
+    public void writeDelta(Grid grid) throws IOException {
+        if (checkpointCells == null) {
+            writeSnapshot(grid);
+            return;
+        }
+        long[] cells = sortedLiveCells(grid);
+        long start = beginRecord(DELTA, grid.getGeneration());
+        writeVarLong(countMissing(cells, checkpointCells));
+        writeCells(cells, checkpointCells);
+        writeVarLong(countMissing(checkpointCells, cells));
+        writeCells(checkpointCells, cells);
+        endRecord(start);
+        checkpointCells = cells;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static long[] sortedLiveCells(Grid grid) {
+        long population = grid.getPopulation();
+        if (population > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many live cells for a checkpoint: " + population);
+        }
+        long[] cells = new long[(int) population];
+        int[] size = new int[1];
+        grid.forEachLiveCell((x, y) -> cells[size[0]++] = Cell.pack(x, y));
+        Arrays.parallelSort(cells);
+        return cells;
+    }
+
+    /**
+     * Counts the cells of the sorted array that are not in the other sorted array
+     */
+    private static int countMissing(long[] cells, long[] other) {
+        int count = 0;
+        int j = 0;
+        for (long cell : cells) {
+            while (j < other.length && other[j] < cell) {
+                j++;
+            }
+            if (j == other.length || other[j] != cell) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the differences between consecutive cells of the sorted array, skipping the cells that are in the
+     * other sorted array if it is given. The differences wrap around, which restoring undoes by adding them up again.
+     */
+    private void writeCells(long[] cells, long[] other) throws IOException {
+        long previous = 0;
+        int j = 0;
+        for (long cell : cells) {
+            if (other != null) {
+                while (j < other.length && other[j] < cell) {
+                    j++;
+                }
+                if (j < other.length && other[j] == cell) {
+                    continue;
+                }
+            }
+            writeVarLong(cell - previous);
+            previous = cell;
+        }
+    }
+
+    private long beginRecord(int type, long generation) throws IOException {
+        flush();
+        long start = channel.position();
+        buffer.put((byte) type);
+        // The length stays 0 until the whole record is on disk
+        buffer.putLong(0);
+        buffer.putLong(generation);
+        return start;
+    }
+
+    private void endRecord(long start) throws IOException {
+        flush();
+        channel.force(false);
+        ByteBuffer length = ByteBuffer.allocate(8);
+        length.putLong(0, channel.position() - start - RECORD_HEADER_SIZE);
+        channel.write(length, start + 1);
+        channel.force(false);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        if (buffer.remaining() < 10) {
+            flush();
+        }
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Detects that a grid has become static or periodic, from a 64-bit Zobrist hash of its live cells.
+ * Every cell has its own pseudo random key, and the hash of a generation is the exclusive or of the keys of
+ * its live cells, so the hash follows the grid by toggling the keys of the cells that were born and died.
+ * A ring holds the hashes and populations of the last maxPeriod generations, and the grid has settled with
+ * period p as soon as a generation matches the one p generations before it.
+ * <p>
+ * Each generation costs as much as its changes plus a scan of the ring, only setting the detector on a grid and
+ * jumping over generations hash the whole population. See Grid.setCycleDetector and Grid.evolveUntilSettled.
+ */
+public class CycleDetector {
+    // Added to a packed cell before mixing, so that the cell at the origin does not have a key of zero
+    private final static long KEY_SEED = 0x9E3779B97F4A7C15L;
+
+    private final int maxPeriod;
+    private final long[] hashes;
+    private final long[] populations;
+    private CycleListener listener;
+    private long hash;
+    // The number of generations recorded in the ring since the last reset
+    private long recorded;
+    private int period;
+    private long firstGeneration;
+
+    /**
+     * @param maxPeriod the longest period that is detected, which is also the number of generations kept in the ring
+     */
+    public CycleDetector(int maxPeriod) {
+        if (maxPeriod < 1) {
+            throw new IllegalArgumentException("The maximum period must be at least 1: " + maxPeriod);
+        }
+        this.maxPeriod = maxPeriod;
+        this.hashes = new long[maxPeriod];
+        this.populations = new long[maxPeriod];
+    }
+
+    /**
+     * Sets the listener that is told once when the grid settles, until the detector is reset
+     */
+    public void setCycleListener(CycleListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the Zobrist key of a packed cell
+     */
+    public static long key(long cell) {
+        return Cell.mix(cell + KEY_SEED);
+    }
+
+    /**
+     * Hashes the grid's live cells and forgets the generations before, for a new or reinitialized grid
+     */
+    void reset(Grid grid) {
+        hash = 0;
+        grid.forEachLiveCell((x, y) -> hash ^= key(Cell.pack(x, y)));
+        recorded = 0;
+        period = 0;
+        record(grid.getPopulation());
+    }
+
+    /**
+     * Moves the hash on to the grid's new generation and checks whether it repeats one in the ring
+     */
+    void update(Grid grid, ChangeSet changes) {
+        for (int i = 0; i < changes.getBirthCount(); i++) {
+            hash ^= key(changes.getBirth(i));
+        }
+        for (int i = 0; i < changes.getDeathCount(); i++) {
+            hash ^= key(changes.getDeath(i));
+        }
+        long population = grid.getPopulation();
+        if (period == 0) {
+            for (int p = 1; p <= Math.min(maxPeriod, recorded); p++) {
+                int i = (int) ((recorded - p) % maxPeriod);
+                if (hashes[i] == hash && populations[i] == population) {
+                    period = p;
+                    firstGeneration = grid.getGeneration() - p;
+                    if (listener != null) {
+                        listener.onCycle(grid, firstGeneration, period);
+                    }
+                    break;
+                }
+            }
+        }
+        record(population);
+    }
+
+    private void record(long population) {
+        int i = (int) (recorded % maxPeriod);
+        hashes[i] = hash;
+        populations[i] = population;
+        recorded++;
+    }
+
+    /**
+     * Returns the hash of the grid's current generation
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public int getMaxPeriod() {
+        return maxPeriod;
+    }
+
+    public boolean isSettled() {
+        return period > 0;
+    }
+
+    /**
+     * Returns the period the grid has settled into, or 0 if it has not settled
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns the first generation of the cycle the grid has settled into, only valid once it has settled
+     */
+    public long getFirstGeneration() {
+        return firstGeneration;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Is told when a grid has settled into a still life or a cycle
+ */
+@FunctionalInterface
+public interface CycleListener {
+    /**
+     * @param firstGeneration the first generation of the cycle, which the current generation repeats
+     * @param period          the length of the cycle, 1 for still lifes and empty grids
+     */
+    void onCycle(Grid grid, long firstGeneration, int period);
+}
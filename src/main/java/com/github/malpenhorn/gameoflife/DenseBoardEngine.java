@@ -0,0 +1,225 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Evolves a bounded or toroidal board of a fixed size, stored densely as one bitboard of 64 cells per long.
+ * Memory and the work per generation only depend on the size of the board, not on what lives on it.
+ * <p>
+ * Every row is padded with a ghost word on either side and the board with a ghost row above and below, so the
+ * next generation is computed with the same SWAR adders as TileEngine and no bounds checks in the inner loop.
+ * On a bounded board the ghost cells are never written and stay dead. On a torus they are filled with the cells
+ * of the opposite edge before each generation, which costs a few words per row. Cells of the last word of a row
+ * that lie beyond the board's width are cleared with a precomputed column mask after each generation, and on a torus
+ * the first of them holds the cell from the opposite edge while the generation is computed.
+ * <p>
+ * As the board is finite, rules with B0 are supported as well.
+ */
+public class DenseBoardEngine implements EvolutionEngine {
+    private final int columns;
+    private final int rows;
+    private final Topology topology;
+    private final Rule rule;
+    private final boolean conway;
+    private final int birth;
+    private final int survival;
+    // The number of words holding a row's cells, and the number of words per row including the ghost words
+    private final int words;
+    private final int stride;
+    // The cells of each word that are on the board, indexed by the word's position within a row
+    private final long[] columnMasks;
+    // On a torus, the bit after the last column of the last word, if that word has bits beyond the board
+    private final long paddingBit;
+    private long[] cells;
+    private long[] next;
+    private long population;
+
+    public DenseBoardEngine(int columns, int rows, Topology topology) {
+        this(columns, rows, topology, Rule.CONWAY);
+    }
+
+    public DenseBoardEngine(int columns, int rows, Topology topology, Rule rule) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("A board needs at least one column and row: " + columns + "x" + rows);
+        }
+        if (topology == Topology.INFINITE) {
+            throw new IllegalArgumentException("A dense board cannot be infinite");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.topology = topology;
+        this.rule = rule;
+        this.conway = rule.equals(Rule.CONWAY);
+        this.birth = rule.getBirthMask();
+        this.survival = rule.getSurvivalMask();
+        this.words = (columns + 63) >>> 6;
+        this.stride = words + 2;
+        this.columnMasks = BoardWords.columnMasks(columns);
+        this.paddingBit = BoardWords.paddingBit(columns);
+        this.cells = new long[(rows + 2) * stride];
+        this.next = new long[(rows + 2) * stride];
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, 0);
+        population = 0;
+    }
+
+    /**
+     * Adds the cell to the board, cells beyond the edges are ignored on a bounded board and wrap around on a torus
+     */
+    @Override
+    public void add(int x, int y) {
+        if (topology == Topology.TORUS) {
+            x = Math.floorMod(x, columns);
+            y = Math.floorMod(y, rows);
+        }
+        else if (x < 0 || x >= columns || y < 0 || y >= rows) {
+            return;
+        }
+        int i = indexOf(x, y);
+        long cell = 1L << (x & 63);
+        if ((cells[i] & cell) == 0) {
+            cells[i] |= cell;
+            population++;
+        }
+    }
+
+    /**
+     * ORs the cells into their word when they are aligned to one and lie on the board
+     */
+    @Override
+    public void addCells(int x, int y, long cells) {
+        if (x < 0 || x >= columns || (x & 63) != 0 || y < 0 || y >= rows
+                || (cells & ~columnMasks[(x >>> 6) + 1]) != 0) {
+            EvolutionEngine.super.addCells(x, y, cells);
+            return;
+        }
+        int i = indexOf(x, y);
+        population += Long.bitCount(cells & ~this.cells[i]);
+        this.cells[i] |= cells;
+    }
+
+    @Override
+    public void evolve() {
+        evolve(null);
+    }
+
+    /**
+     * Records the changes word by word while the board moves to its next generation
+     */
+    @Override
+    public void evolve(ChangeSet changes) {
+        if (topology == Topology.TORUS) {
+            wrapEdges();
+        }
+        long[] cells = this.cells;
+        long[] next = this.next;
+        long nextPopulation = 0;
+        for (int y = 1; y <= rows; y++) {
+            int row = y * stride;
+            for (int w = 1; w <= words; w++) {
+                int i = row + w;
+                long word = nextWord(cells, i) & columnMasks[w];
+                next[i] = word;
+                nextPopulation += Long.bitCount(word);
+                if (changes != null) {
+                    BoardWords.recordChanges(cells[i] & columnMasks[w], word, (w - 1) << 6, y - 1, changes);
+                }
+            }
+        }
+        this.cells = next;
+        this.next = cells;
+        population = nextPopulation;
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    @Override
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public long getPopulation() {
+        return population;
+    }
+
+    @Override
+    public void forEachLiveCell(CellConsumer consumer) {
+        forEachLiveCellIn(0, 0, columns, rows, consumer);
+    }
+
+    @Override
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        int fromX = Math.max(0, x0);
+        int toX = Math.min(columns, x1);
+        int fromY = Math.max(0, y0);
+        int toY = Math.min(rows, y1);
+        if (fromX >= toX || fromY >= toY) {
+            return;
+        }
+        int fromWord = fromX >>> 6;
+        int toWord = (toX - 1) >>> 6;
+        for (int y = fromY; y < toY; y++) {
+            int row = (y + 1) * stride + 1;
+            for (int w = fromWord; w <= toWord; w++) {
+                long word = cells[row + w] & BoardWords.rangeMask(fromX - (w << 6), toX - (w << 6));
+                while (word != 0) {
+                    consumer.accept((w << 6) + Long.numberOfTrailingZeros(word), y);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private long nextWord(long[] cells, int i) {
+        int above = i - stride;
+        int below = i + stride;
+        if (conway) {
+            return Swar.nextGeneration(
+                    cells[above], cells[above - 1], cells[above + 1],
+                    cells[i], cells[i - 1], cells[i + 1],
+                    cells[below], cells[below - 1], cells[below + 1]);
+        }
+        return Swar.nextGeneration(
+                cells[above], cells[above - 1], cells[above + 1],
+                cells[i], cells[i - 1], cells[i + 1],
+                cells[below], cells[below - 1], cells[below + 1],
+                birth, survival);
+    }
+
+    /**
+     * Fills the ghost cells around the board with the cells of the opposite edges. The columns are wrapped first,
+     * so that copying the first and last rows also fills the ghost corners.
+     */
+    private void wrapEdges() {
+        int lastBit = (columns - 1) & 63;
+        for (int y = 1; y <= rows; y++) {
+            int row = y * stride;
+            long first = cells[row + 1] & 1L;
+            long last = (cells[row + words] >>> lastBit) & 1L;
+            cells[row] = last << 63;
+            cells[row + words + 1] = first;
+            cells[row + words] = (cells[row + words] & columnMasks[words]) | (-first & paddingBit);
+        }
+        System.arraycopy(cells, rows * stride, cells, 0, stride);
+        System.arraycopy(cells, stride, cells, (rows + 1) * stride, stride);
+    }
+
+    private int indexOf(int x, int y) {
+        return (y + 1) * stride + 1 + (x >>> 6);
+    }
+}
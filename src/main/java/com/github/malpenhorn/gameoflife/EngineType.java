@@ -0,0 +1,56 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * The available evolution engines, by the names used on the command line
+ */
+public enum EngineType {
+    /**
+     * Counts neighbors of a set of live cells, the default for small and sparse patterns
+     */
+    NEIGHBOR_COUNT("neighbor-count"),
+    /**
+     * Bit-packed 64x64 tiles evolved in parallel, for dense patterns such as random soups
+     */
+    TILE("tile"),
+    /**
+     * Memoized quadtree, for patterns with a lot of repetition in space and time that run for many generations
+     */
+    HASHLIFE("hashlife");
+
+    private final String name;
+
+    EngineType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates an engine, the number of threads is only used by engines that evolve in parallel
+     */
+    public EvolutionEngine create(int threads) {
+        return create(Rule.CONWAY, threads);
+    }
+
+    public EvolutionEngine create(Rule rule, int threads) {
+        switch (this) {
+            case TILE:
+                return new TileEngine(rule, threads);
+            case HASHLIFE:
+                return new HashLifeEngine(rule);
+            default:
+                return new NeighborCountEngine(rule);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static EngineType of(String name) {
+        for (EngineType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name);
+    }
+}
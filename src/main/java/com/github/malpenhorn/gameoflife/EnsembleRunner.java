@@ -0,0 +1,442 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs an ensemble of independent random soups in one JVM, one soup at a time on each of a number of workers,
+ * until every soup has settled into a still life or oscillator or has reached the maximum number of generations.
+ * <p>
+ * Every worker keeps its own engine, grid and cycle detector and clears them between soups, so the engines' tables
+ * are reused instead of being allocated for each soup. A soup has settled when its CycleDetector finds that
+ * a generation repeats one of the last MAX_PERIOD generations.
+ * <p>
+ * On an unbounded plane a soup that has shot off gliders never repeats, so as apgsearch does the gliders that move away
+ * from the rest of the soup are left out. Gliders always have five cells, so such a soup's population is periodic,
+ * and once it has repeated with a period for POPULATION_WINDOW generations the soup is split into its objects.
+ * Gliders are the objects of five cells that reappear one cell away diagonally after four generations on their own,
+ * and the gliders beyond the bounding box of the other objects that move away from it are escaping, and the soup has
+ * settled if the rest repeats on its own. Its lifespan is then the start of the population's cycle.
+ * Other spaceships are rare in soups and still leave them unsettled.
+ */
+public class EnsembleRunner {
+    /**
+     * The longest period that is detected, soups that end up in longer cycles run until the maximum generation
+     */
+    public final static int MAX_PERIOD = 30;
+    /**
+     * The number of generations the population has to repeat with a period before the escaping gliders are left out
+     */
+    public final static int POPULATION_WINDOW = 2 * MAX_PERIOD;
+    // How far a glider has to be beyond the bounding box of the rest of the soup to be escaping from it
+    private final static int ESCAPE_MARGIN = 4;
+
+    private final EngineType engineType;
+    private final Rule rule;
+    private final int size;
+    private final double density;
+    private final long maxGenerations;
+    private Topology topology = Topology.INFINITE;
+    private Census census;
+
+    /**
+     * @param size           the width and height of the square the soups are created in
+     * @param density        the probability that a cell of the square is alive
+     * @param maxGenerations the number of generations after which a soup that has not settled is given up
+     */
+    public EnsembleRunner(EngineType engineType, int size, double density, long maxGenerations) {
+        this(engineType, Rule.CONWAY, size, density, maxGenerations);
+    }
+
+    public EnsembleRunner(EngineType engineType, Rule rule, int size, double density, long maxGenerations) {
+        this.engineType = engineType;
+        this.rule = rule;
+        this.size = size;
+        this.density = density;
+        this.maxGenerations = maxGenerations;
+    }
+
+    /**
+     * Sets the topology the soups live on, on a bounded board or torus of the soups' size the engine type is not used
+     */
+    public void setTopology(Topology topology) {
+        this.topology = topology;
+    }
+
+    /**
+     * Sets the census that the objects of every soup's last generation are added to, or null for none
+     */
+    public void setCensus(Census census) {
+        this.census = census;
+    }
+
+    /**
+     * Runs the soups with seeds firstSeed to firstSeed + soups - 1 on the given number of threads
+     */
+    public Result run(long firstSeed, int soups, int threads) {
+        SoupResult[] results = new SoupResult[soups];
+        AtomicInteger nextSoup = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker();
+                workers[i] = executor.submit(() -> {
+                    try {
+                        for (int soup = nextSoup.getAndIncrement(); soup < soups; soup = nextSoup.getAndIncrement()) {
+                            results[soup] = worker.run(firstSeed + soup);
+                        }
+                    } finally {
+                        worker.engine.close();
+                    }
+                });
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the ensemble", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A soup failed to run", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(results);
+    }
+
+    /**
+     * The engine, grid and buffers of one worker thread, reused for every soup the worker runs
+     */
+    private final class Worker {
+        private final EvolutionEngine engine = topology.createEngine(size, size, engineType, rule, 1);
+        private final Grid grid = new Grid(size, size, engine);
+        private final CycleDetector cycleDetector = new CycleDetector(MAX_PERIOD);
+        // Gliders only escape on an unbounded plane, on a board they hit the edge and on a torus they come back
+        private final boolean escaping = topology == Topology.INFINITE;
+        // The populations of the last MAX_PERIOD generations, and for every period the number of generations in a row
+        // that had the population of the generation that period before
+        private final long[] populations = new long[MAX_PERIOD];
+        private final int[] runs = new int[MAX_PERIOD + 1];
+        // The rest of a soup without its escaping gliders is run on its own to find out whether it repeats
+        private final Grid rest = new Grid(size, size, Topology.INFINITE, rule);
+        private final CycleDetector restDetector = new CycleDetector(MAX_PERIOD);
+        private final NeighborCountEngine glider = new NeighborCountEngine(rule);
+
+        Worker() {
+            grid.setCycleDetector(cycleDetector);
+            rest.setCycleDetector(restDetector);
+        }
+
+        SoupResult run(long seed) {
+            engine.clear();
+            grid.setGeneration(0);
+            grid.initialize(density, seed);
+            long initialPopulation = grid.getPopulation();
+            Arrays.fill(runs, 0);
+            populations[0] = initialPopulation;
+            long nextCheck = POPULATION_WINDOW;
+            SoupResult result = null;
+            while (result == null && grid.getGeneration() < maxGenerations) {
+                grid.evolve();
+                long generation = grid.getGeneration();
+                long population = grid.getPopulation();
+                if (cycleDetector.isSettled()) {
+                    result = new SoupResult(seed, cycleDetector.getFirstGeneration(), cycleDetector.getPeriod(),
+                            initialPopulation, population, 0);
+                }
+                else if (escaping) {
+                    // The ring slot of the generation MAX_PERIOD before is read before it is overwritten
+                    int minPeriod = 0;
+                    for (int period = 1; period <= MAX_PERIOD; period++) {
+                        boolean repeats = generation >= period
+                                && populations[(int) ((generation - period) % MAX_PERIOD)] == population;
+                        runs[period] = repeats ? runs[period] + 1 : 0;
+                        if (minPeriod == 0 && runs[period] >= POPULATION_WINDOW) {
+                            minPeriod = period;
+                        }
+                    }
+                    populations[(int) (generation % MAX_PERIOD)] = population;
+                    if (minPeriod > 0 && generation >= nextCheck) {
+                        result = settleWithoutGliders(seed, initialPopulation);
+                        nextCheck = generation + POPULATION_WINDOW;
+                    }
+                }
+            }
+            if (census != null) {
+                census.add(grid);
+            }
+            return result != null ? result
+                    : new SoupResult(seed, maxGenerations, 0, initialPopulation, grid.getPopulation(), 0);
+        }
+
+        /**
+         * Leaves out the gliders that escape from the soup and returns how the soup ended if the rest repeats
+         * on its own, or null if it does not
+         */
+        private SoupResult settleWithoutGliders(long seed, long initialPopulation) {
+            LongCellSet cells = new LongCellSet((int) grid.getPopulation());
+            grid.forEachLiveCell(cells::add);
+            LongCellSet restCells = new LongCellSet(cells.size());
+            List<long[]> gliders = new ArrayList<>();
+            List<int[]> directions = new ArrayList<>();
+            int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (long[] object : splitObjects(cells)) {
+                int[] direction = object.length == 5 ? glide(object) : null;
+                if (direction != null) {
+                    gliders.add(object);
+                    directions.add(direction);
+                }
+                else {
+                    for (long cell : object) {
+                        restCells.add(cell);
+                        extend(box, cell);
+                    }
+                }
+            }
+            int escapedGliders = 0;
+            for (int i = 0; i < gliders.size(); i++) {
+                if (restCells.isEmpty() || isEscaping(gliders.get(i), directions.get(i), box)) {
+                    escapedGliders++;
+                }
+                else {
+                    for (long cell : gliders.get(i)) {
+                        restCells.add(cell);
+                    }
+                }
+            }
+            if (escapedGliders == 0) {
+                return null;
+            }
+
+            rest.initialize(restCells);
+            long start = rest.getGeneration();
+            rest.evolveUntilSettled(MAX_PERIOD);
+            if (!restDetector.isSettled() || restDetector.getFirstGeneration() != start) {
+                return null;
+            }
+            int period = restDetector.getPeriod();
+            // The population has repeated with a divisor of the period for POPULATION_WINDOW generations,
+            // so it has also repeated with the period itself, and its cycle started before the first repeat
+            long lifespan = Math.max(0, grid.getGeneration() - runs[period] + 1 - period);
+            return new SoupResult(seed, lifespan, period, initialPopulation, restCells.size(), escapedGliders);
+        }
+
+        /**
+         * Returns the direction the object moves in if it is a glider, or null if it is not
+         */
+        private int[] glide(long[] cells) {
+            glider.clear();
+            for (long cell : cells) {
+                glider.add(Cell.unpackX(cell), Cell.unpackY(cell));
+            }
+            for (int generation = 0; generation < 4; generation++) {
+                glider.evolve();
+            }
+            int[] own = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (long cell : cells) {
+                extend(own, cell);
+            }
+            LongCellSet next = glider.getLiveCells();
+            int[] moved = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            next.forEachPacked(cell -> extend(moved, cell));
+            int dx = moved[0] - own[0];
+            int dy = moved[1] - own[1];
+            if (next.size() != cells.length || Math.abs(dx) != 1 || Math.abs(dy) != 1) {
+                return null;
+            }
+            for (long cell : cells) {
+                if (!next.contains(Cell.unpackX(cell) + dx, Cell.unpackY(cell) + dy)) {
+                    return null;
+                }
+            }
+            return new int[] {dx, dy};
+        }
+    }
+
+    /**
+     * Returns whether the glider lies beyond the bounding box of the rest of the soup on a side it moves away from
+     */
+    private static boolean isEscaping(long[] cells, int[] direction, int[] box) {
+        int[] own = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (long cell : cells) {
+            extend(own, cell);
+        }
+        return direction[0] > 0 && own[0] > box[2] + ESCAPE_MARGIN
+                || direction[0] < 0 && own[2] < box[0] - ESCAPE_MARGIN
+                || direction[1] > 0 && own[1] > box[3] + ESCAPE_MARGIN
+                || direction[1] < 0 && own[3] < box[1] - ESCAPE_MARGIN;
+    }
+
+    /**
+     * Splits the cells into objects of cells that touch, including diagonally
+     */
+    private static List<long[]> splitObjects(LongCellSet cells) {
+        List<long[]> objects = new ArrayList<>();
+        LongCellSet unvisited = new LongCellSet(cells.size());
+        cells.forEachPacked(unvisited::add);
+        long[] stack = new long[cells.size()];
+        cells.forEachPacked(first -> {
+            if (!unvisited.remove(first)) {
+                return;
+            }
+            int size = 0;
+            int top = 0;
+            long[] object = new long[8];
+            stack[top++] = first;
+            while (top > 0) {
+                long cell = stack[--top];
+                if (size == object.length) {
+                    object = Arrays.copyOf(object, size * 2);
+                }
+                object[size++] = cell;
+                int x = Cell.unpackX(cell);
+                int y = Cell.unpackY(cell);
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        long neighbor = Cell.pack(x + dx, y + dy);
+                        if (unvisited.remove(neighbor)) {
+                            stack[top++] = neighbor;
+                        }
+                    }
+                }
+            }
+            objects.add(Arrays.copyOf(object, size));
+        });
+        return objects;
+    }
+
+    /**
+     * Extends the bounding box minX, minY, maxX, maxY to the cell
+     */
+    private static void extend(int[] box, long cell) {
+        int x = Cell.unpackX(cell);
+        int y = Cell.unpackY(cell);
+        box[0] = Math.min(box[0], x);
+        box[1] = Math.min(box[1], y);
+        box[2] = Math.max(box[2], x);
+        box[3] = Math.max(box[3], y);
+    }
+
+    /**
+     * How one soup ended
+     */
+    public static final class SoupResult {
+        private final long seed;
+        private final long lifespan;
+        private final int period;
+        private final long initialPopulation;
+        private final long finalPopulation;
+        private final int escapedGliders;
+
+        SoupResult(long seed, long lifespan, int period, long initialPopulation, long finalPopulation,
+                int escapedGliders) {
+            this.seed = seed;
+            this.lifespan = lifespan;
+            this.period = period;
+            this.initialPopulation = initialPopulation;
+            this.finalPopulation = finalPopulation;
+            this.escapedGliders = escapedGliders;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * Returns the first generation of the final still life or cycle, or the maximum generation if the soup
+         * did not settle. For a soup that gliders escaped from it is the first generation of the population's cycle.
+         */
+        public long getLifespan() {
+            return lifespan;
+        }
+
+        /**
+         * Returns the period the soup settled into, 1 for still lifes and empty grids, or 0 if it did not settle
+         */
+        public int getPeriod() {
+            return period;
+        }
+
+        public boolean isSettled() {
+            return period > 0;
+        }
+
+        public long getInitialPopulation() {
+            return initialPopulation;
+        }
+
+        /**
+         * Returns the population of the last generation, without the gliders that escaped from a settled soup
+         */
+        public long getFinalPopulation() {
+            return finalPopulation;
+        }
+
+        /**
+         * Returns the number of gliders that were left out because they escaped from the soup before it settled
+         */
+        public int getEscapedGliders() {
+            return escapedGliders;
+        }
+    }
+
+    /**
+     * The results of all soups of an ensemble, in order of seed
+     */
+    public static final class Result {
+        private final SoupResult[] soups;
+
+        Result(SoupResult[] soups) {
+            this.soups = soups;
+        }
+
+        public int getSoupCount() {
+            return soups.length;
+        }
+
+        public SoupResult getSoup(int i) {
+            return soups[i];
+        }
+
+        /**
+         * Writes one CSV line for every outcome: soups that died out, settled with each period, or did not settle
+         */
+        public void writeSummary(Writer out) throws IOException {
+            out.write("outcome,soups,mean_lifespan,max_lifespan,mean_final_population\n");
+            writeOutcome(out, "extinct", 1, true);
+            for (int period = 1; period <= MAX_PERIOD; period++) {
+                writeOutcome(out, period == 1 ? "still" : "p" + period, period, false);
+            }
+            writeOutcome(out, "unsettled", 0, false);
+        }
+
+        private void writeOutcome(Writer out, String outcome, int period, boolean extinct) throws IOException {
+            int count = 0;
+            long lifespans = 0;
+            long maxLifespan = 0;
+            long finalPopulations = 0;
+            for (SoupResult soup : soups) {
+                if (soup.period == period && (soup.finalPopulation == 0) == extinct) {
+                    count++;
+                    lifespans += soup.lifespan;
+                    maxLifespan = Math.max(maxLifespan, soup.lifespan);
+                    finalPopulations += soup.finalPopulation;
+                }
+            }
+            if (count > 0) {
+                out.write(String.format(Locale.ROOT, "%s,%d,%.1f,%d,%.1f\n", outcome, count,
+                        (double) lifespans / count, maxLifespan, (double) finalPopulations / count));
+            }
+        }
+    }
+}
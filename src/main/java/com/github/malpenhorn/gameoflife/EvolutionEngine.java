@@ -0,0 +1,119 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Holds the live cells of a grid and computes its next generations. Implementations are free to choose
+ * their own cell storage, so an engine belongs to a single Grid.
+ */
+public interface EvolutionEngine extends AutoCloseable {
+    /**
+     * Removes all live cells
+     */
+    void clear();
+
+    /**
+     * Makes the cell at (x, y) live
+     */
+    void add(int x, int y);
+
+    /**
+     * Makes the cells at (x + i, y) live for every bit i that is set in cells.
+     * Engines that store their cells as bits override it to write whole words at once.
+     */
+    default void addCells(int x, int y, long cells) {
+        for (long remaining = cells; remaining != 0; remaining &= remaining - 1) {
+            add(x + Long.numberOfTrailingZeros(remaining), y);
+        }
+    }
+
+    /**
+     * Replaces the live cells with the given set. Engines that store their cells in a LongCellSet may take it over.
+     */
+    default void load(LongCellSet liveCells) {
+        clear();
+        liveCells.forEach(this::add);
+    }
+
+    /**
+     * Evolves the live cells by one generation
+     */
+    void evolve();
+
+    /**
+     * Evolves the live cells by one generation and adds the cells that were born and died to the change set.
+     * This default compares the generations before and after, engines override it to record the changes as they go.
+     */
+    default void evolve(ChangeSet changes) {
+        LongCellSet before = new LongCellSet((int) Math.min(getPopulation(), Integer.MAX_VALUE));
+        forEachLiveCell(before::add);
+        evolve();
+        forEachLiveCell((x, y) -> {
+            if (!before.remove(x, y)) {
+                changes.addBirth(x, y);
+            }
+        });
+        before.forEach(changes::addDeath);
+    }
+
+    /**
+     * Evolves the live cells by the given number of generations
+     */
+    default void advance(long generations) {
+        for (long i = 0; i < generations; i++) {
+            evolve();
+        }
+    }
+
+    /**
+     * Returns the rule the engine evolves its cells by
+     */
+    default Rule getRule() {
+        return Rule.CONWAY;
+    }
+
+    /**
+     * Returns the shape of the space the cells live in
+     */
+    default Topology getTopology() {
+        return Topology.INFINITE;
+    }
+
+    long getPopulation();
+
+    void forEachLiveCell(CellConsumer consumer);
+
+    /**
+     * Visits the live cells with x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1
+     */
+    default void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        forEachLiveCell((x, y) -> {
+            if (x >= x0 && x < x1 && y >= y0 && y < y1) {
+                consumer.accept(x, y);
+            }
+        });
+    }
+
+    /**
+     * Visits the live cells with x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1 grouped into aligned blocks of 2^shift by 2^shift
+     * cells, so block (bx, by) holds the cells with x &gt;&gt; shift == bx and y &gt;&gt; shift == by.
+     * Engines that keep population counts per tile or quadtree node report whole blocks without visiting their cells.
+     */
+    default void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        forEachLiveCellIn(x0, y0, x1, y1, (x, y) -> consumer.accept(x >> shift, y >> shift, 1));
+    }
+
+    /**
+     * Returns the live cells as a set, which is either the engine's own storage or a copy of it
+     */
+    default LongCellSet getLiveCells() {
+        LongCellSet liveCells = new LongCellSet((int) Math.min(getPopulation(), Integer.MAX_VALUE));
+        forEachLiveCell(liveCells::add);
+        return liveCells;
+    }
+
+    /**
+     * Releases the threads, memory or files the engine holds beyond the heap, it cannot be used afterwards
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the part of a grid that a viewport shows in one generation, so it can be rendered while the grid
+ * evolves further. It holds the population of every visible block of cells, which are single cells unless the
+ * viewport is zoomed out. Frames are reused through a FrameExchange, which keeps the simulation loop from
+ * allocating a new array every generation.
+ */
+public class Frame {
+    private long[] populations = new long[0];
+    private Viewport viewport;
+    private long generation;
+    private long population;
+    private int columns;
+    private int rows;
+
+    /**
+     * Replaces the contents of the frame with the visible blocks of the grid
+     */
+    public void capture(Grid grid, Viewport viewport) {
+        this.viewport = viewport;
+        generation = grid.getGeneration();
+        population = grid.getPopulation();
+        columns = viewport.getColumns();
+        rows = viewport.getRows();
+        if (populations.length != columns * rows) {
+            populations = new long[columns * rows];
+        }
+        else {
+            Arrays.fill(populations, 0);
+        }
+
+        int shift = viewport.getShift();
+        long blockX0 = viewport.getBlockX0();
+        long blockY0 = viewport.getBlockY0();
+        grid.forEachBlockIn(toCell(blockX0, shift), toCell(blockY0, shift),
+                toCell(blockX0 + columns, shift), toCell(blockY0 + rows, shift), shift, (blockX, blockY, count) -> {
+            int column = (int) (blockX - blockX0);
+            int row = (int) (blockY - blockY0);
+            populations[row * columns + column] += count;
+        });
+    }
+
+    /**
+     * Returns the number of live cells in the block at the column and row of the frame
+     */
+    public long getBlockPopulation(int column, int row) {
+        return populations[row * columns + column];
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the first cell coordinate of a block, clamped to the range of int coordinates
+     */
+    private static int toCell(long block, int shift) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, block << shift));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free single slot hand over of frames from the simulation thread to the rendering thread.
+ * Publishing replaces any frame that has not been taken yet, so the renderer always gets the latest generation
+ * and skips the ones it had no time for. Dropped and rendered frames are recycled as the producer's next back buffer.
+ */
+final class FrameExchange {
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+    private final AtomicReference<Frame> spare = new AtomicReference<>();
+
+    /**
+     * Returns a frame for the producer to fill, reusing a recycled one when there is one
+     */
+    Frame obtain() {
+        Frame frame = spare.getAndSet(null);
+        return frame != null ? frame : new Frame();
+    }
+
+    /**
+     * Publishes the frame and returns whether it replaced a frame that was never taken
+     */
+    boolean publish(Frame frame) {
+        Frame dropped = latest.getAndSet(frame);
+        if (dropped != null) {
+            spare.set(dropped);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the latest published frame, or null if nothing new was published since the last call
+     */
+    Frame take() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Hands a taken frame back once it is rendered
+     */
+    void release(Frame frame) {
+        spare.set(frame);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.malpenhorn.gameoflife;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -10,15 +11,31 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 public class GUIApplication extends Application {
     private final static int INITIAL_GRID_COLUMNS = 10;
     private final static int INITIAL_GRID_ROWS = 10;
-
+    private final static long HISTORY_BYTES = 64L << 20;
+    private final static long NO_SEEK = -1;
+
+    // Kept over restarts and published over JMX for as long as the application runs
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    // The generation the simulation thread is asked to move to, set by the history controls
+    private final AtomicLong seekRequest = new AtomicLong(NO_SEEK);
+    private volatile boolean paused;
+    // The speed slider's value, which the simulation thread reads without touching the slider
+    private volatile double speed;
     private GridPane controls;
     private Slider cellLivePercentSlider;
-    private Slider speedSlider;
-    private Slider gridSizeSlider;
+    private Slider historySlider;
+    private Button pauseButton;
+    private long shownGeneration;
     private Thread simulationThread;
+    private GUIGridPrinter printer;
+    private AnimationTimer renderTimer;
 
     @Override
     public void start(Stage primaryStage) {
@@ -29,6 +46,7 @@ public class GUIApplication extends Application {
             System.exit(0);
         });
 
+        metrics.registerMBean("gui");
         createControls(primaryStage);
         startNewSimulation(primaryStage);
     }
@@ -43,25 +61,77 @@ public class GUIApplication extends Application {
         Label cellLivePercentLabel = new Label("Cell live percent: ");
         HBox cellLivePercentControl = new HBox(cellLivePercentLabel, cellLivePercentSlider);
 
-        speedSlider = getSpeedSlider();
+        Slider speedSlider = getSpeedSlider();
+        speed = speedSlider.getValue();
+        speedSlider.valueProperty().addListener((observable, oldValue, newValue) -> speed = newValue.doubleValue());
         Label speedLabel = new Label("Speed: ");
         HBox speedControl = new HBox(speedLabel, speedSlider);
 
-        gridSizeSlider = getGridSizeSlider();
-        Label gridSizeLabel = new Label("Grid size: ");
-        HBox gridSizeControl = new HBox(gridSizeLabel, gridSizeSlider);
+        Button centerButton = new Button("Center");
+        centerButton.setOnAction(actionEvent -> printer.setViewport(initialViewport()));
+        Label navigationLabel = new Label("Drag or arrow keys to pan, scroll or +/- to zoom");
+        HBox navigationControl = new HBox(10, centerButton, navigationLabel);
 
         Button restartButton = new Button("Restart");
         restartButton.setDefaultButton(true);
         restartButton.setOnAction(actionEvent ->  {
-            simulationThread.interrupt();
+            stopSimulation();
             startNewSimulation(primaryStage);
         });
 
+        pauseButton = new Button("Pause");
+        pauseButton.setOnAction(actionEvent -> setPaused(!paused));
+        Button stepBackButton = new Button("Step back");
+        stepBackButton.setOnAction(actionEvent -> {
+            setPaused(true);
+            requestSeek(shownGeneration - 1);
+        });
+        Button stepButton = new Button("Step");
+        stepButton.setOnAction(actionEvent -> {
+            setPaused(true);
+            requestSeek(shownGeneration + 1);
+        });
+        historySlider = new Slider(0, 0, 0);
+        historySlider.setPrefWidth(300);
+        historySlider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            // Only when dragged or clicked, the render timer moves the slider along with the simulation as well
+            if (historySlider.isPressed() || historySlider.isValueChanging()) {
+                setPaused(true);
+                requestSeek(Math.round(newValue.doubleValue()));
+            }
+        });
+        HBox historyControl = new HBox(10, pauseButton, stepBackButton, stepButton, historySlider);
+
         controls.add(restartButton, 0, 0);
         controls.add(cellLivePercentControl, 1, 0);
         controls.add(speedControl, 0, 1);
-        controls.add(gridSizeControl, 1, 1);
+        controls.add(navigationControl, 1, 1);
+        controls.add(historyControl, 0, 2, 2, 1);
+    }
+
+    /**
+     * Interrupts the simulation thread and waits for it to exit, which it does after the generation it is evolving,
+     * so that the next simulation does not share the metrics and the seek request with it
+     */
+    private void stopSimulation() {
+        renderTimer.stop();
+        simulationThread.interrupt();
+        try {
+            simulationThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setPaused(boolean paused) {
+        this.paused = paused;
+        pauseButton.setText(paused ? "Play" : "Pause");
+        LockSupport.unpark(simulationThread);
+    }
+
+    private void requestSeek(long generation) {
+        seekRequest.set(Math.max(0, generation));
+        LockSupport.unpark(simulationThread);
     }
 
     private Slider getCellLivePercentSlider() {
@@ -84,40 +154,98 @@ public class GUIApplication extends Application {
         return speedControl;
     }
 
-    private Slider getGridSizeSlider() {
-        Slider gridSizeControl = new Slider(0, 4, 0);
-        gridSizeControl.setShowTickLabels(true);
-        gridSizeControl.setShowTickMarks(true);
-        gridSizeControl.setMajorTickUnit(1);
-        gridSizeControl.setMinorTickCount(0);
-        gridSizeControl.setBlockIncrement(1);
-        gridSizeControl.setSnapToTicks(true);
-        return gridSizeControl;
-    }
-
+    /**
+     * Evolves the grid on its own thread, which publishes a frame of every generation through a FrameExchange.
+     * The JavaFX application thread renders the latest frame on each pulse and never waits for the simulation,
+     * frames published faster than they can be shown are dropped. Panning or zooming wakes up the simulation thread,
+     * which captures the current generation again for the new viewport.
+     * <p>
+     * Every generation is recorded in a History. The history controls only ask the simulation thread to seek, which
+     * then moves the grid to the requested generation itself, so the grid and its history stay on one thread.
+     */
     private void startNewSimulation(Stage primaryStage) {
         Grid grid = new Grid(INITIAL_GRID_COLUMNS, INITIAL_GRID_ROWS);
         grid.initialize(cellLivePercentSlider.getValue() / 100);
-        GridPrinter printer = new GUIGridPrinter(primaryStage, controls, INITIAL_GRID_COLUMNS, INITIAL_GRID_ROWS);
+        grid.setMetrics(metrics);
+        History history = new History(HISTORY_BYTES);
+        history.attach(grid);
+        seekRequest.set(NO_SEEK);
+        setPaused(false);
+        // The simulation thread keeps its own printer, the field is only used on the JavaFX application thread
+        GUIGridPrinter printer = new GUIGridPrinter(primaryStage, controls, INITIAL_GRID_COLUMNS / 2.0,
+                INITIAL_GRID_ROWS / 2.0);
+        this.printer = printer;
+        FrameExchange frames = new FrameExchange();
         simulationThread = new Thread(() -> {
-            boolean running = true;
-            while (running) {
-                int gridSize = (int) Math.pow(2, (int) gridSizeSlider.getValue()) * 10;
-                Platform.runLater(() -> {
-                    grid.setVisibleColumns(gridSize);
-                    grid.setVisibleRows(gridSize);
-                    printer.print(grid);
-                    grid.evolve();
-                });
+            long nextGeneration = System.nanoTime();
+            while (!Thread.currentThread().isInterrupted()) {
+                long generation = seekRequest.getAndSet(NO_SEEK);
+                if (generation != NO_SEEK) {
+                    seek(grid, history, generation);
+                }
+                Frame frame = frames.obtain();
+                frame.capture(grid, printer.getViewport());
+                if (frames.publish(frame)) {
+                    metrics.recordDroppedFrame();
+                }
 
-                try {
-                    Thread.sleep(2100 - (int) speedSlider.getValue() * 100);
-                } catch (InterruptedException e) {
-                    // Current simulation is terminated
-                    running = false;
+                long now = System.nanoTime();
+                if (paused) {
+                    // Woken up by the history controls or when the viewport changes
+                    LockSupport.park();
+                }
+                else if (now - nextGeneration >= 0) {
+                    grid.evolve();
+                    // At full speed the simulation runs as fast as it can
+                    nextGeneration = now + TimeUnit.MILLISECONDS.toNanos(2000 - (int) speed * 100);
+                }
+                else {
+                    // Woken up early when the viewport changes, to capture the current generation again
+                    LockSupport.parkNanos(nextGeneration - now);
                 }
             }
-        });
+        }, "simulation");
+        simulationThread.setDaemon(true);
+        Thread thread = simulationThread;
+        printer.setViewportListener(() -> LockSupport.unpark(thread));
+
+        renderTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                Frame frame = frames.take();
+                if (frame != null) {
+                    long start = System.nanoTime();
+                    printer.print(frame);
+                    metrics.recordFrame(System.nanoTime() - start);
+                    shownGeneration = frame.getGeneration();
+                    frames.release(frame);
+                }
+                if (!historySlider.isPressed() && !historySlider.isValueChanging()) {
+                    historySlider.setMax(history.getNewestGeneration());
+                    historySlider.setMin(history.getOldestGeneration());
+                    historySlider.setValue(shownGeneration);
+                }
+            }
+        };
+        renderTimer.start();
         simulationThread.start();
     }
+
+    /**
+     * Moves the grid to a generation in its history, or evolves it by one when stepping past the newest generation
+     */
+    private static void seek(Grid grid, History history, long generation) {
+        if (generation > history.getNewestGeneration()) {
+            grid.evolve();
+        }
+        else {
+            history.seek(grid, Math.max(generation, history.getOldestGeneration()));
+        }
+    }
+
+    private Viewport initialViewport() {
+        Viewport current = printer.getViewport();
+        return new Viewport(INITIAL_GRID_COLUMNS / 2.0, INITIAL_GRID_ROWS / 2.0, Viewport.MIN_ZOOM,
+                current.getWidth(), current.getHeight());
+    }
 }
@@ -1,139 +1,203 @@
 package com.github.malpenhorn.gameoflife;
 
 import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
-import javafx.scene.control.Slider;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
 
-import java.util.HashSet;
-import java.util.Set;
-
+/**
+ * Renders the grid into a single image with one pixel per block of the viewport, scaled up to the display without
+ * smoothing. When zoomed out a pixel stands for many cells and is shaded by their density. The pixels are kept in
+ * an int array and only the rows that changed since the last frame are written to the image.
+ * <p>
+ * The view is panned by dragging or with the arrow keys, and zoomed with the scroll wheel or the + and - keys.
+ */
 public class GUIGridPrinter implements GridPrinter {
-    private final static Image LIVE_CELL = createImage(Color.BLACK);
-    private final static Image DEAD_CELL = createImage(Color.WHITE);
+    private final static int DISPLAY_SIZE = 500;
+    private final static int PAN_STEP = 50;
+    private final static int LIVE_CELL = 0xFF000000;
+    private final static int DEAD_CELL = 0xFFFFFFFF;
+    // The lightest gray a block with any live cells is shaded with
+    private final static int SPARSE_BLOCK_GRAY = 0xC0;
 
-    private final int initialGridColumns;
-    private final int initialGridRows;
-    private final Slider gridSizeControl;
     private final Label generationLabel;
     private final Label liveThreadsLabel;
-    private final ImageView[][] maxVisibleImageViewGrid;
-    private final VBox vBox;
-
-    private ImageView[][] displayedGrid;
-    private Set<Cell> liveCells;
-
-    public GUIGridPrinter(Stage stage, GridPane controls, int initialGridColumns, int initialGridRows) {
-        this.initialGridColumns = initialGridColumns;
-        this.initialGridRows = initialGridRows;
-        liveCells = new HashSet<>();
-        displayedGrid = new ImageView[0][0];
-        gridSizeControl = (Slider) ((HBox) controls.getChildren().get(3)).getChildren().get(1);
+    private final ImageView imageView;
+
+    private volatile Viewport viewport;
+    private Runnable viewportListener = () -> { };
+    private double dragX;
+    private double dragY;
+    private WritableImage image;
+    private int[] pixels;
+    private boolean[] dirtyRows;
+
+    public GUIGridPrinter(Stage stage, GridPane controls, double centerX, double centerY) {
+        viewport = new Viewport(centerX, centerY, Viewport.MIN_ZOOM, DISPLAY_SIZE, DISPLAY_SIZE);
         generationLabel = new Label();
         liveThreadsLabel = new Label();
 
-        int gridSize = (int) Math.pow(2, (int) gridSizeControl.getMax()) * 10;
-        maxVisibleImageViewGrid = new ImageView[gridSize][gridSize];
-        initializeMaxVisibleImageViewGrid(gridSize);
+        imageView = new ImageView();
+        imageView.setSmooth(false);
+        Pane gridPane = new Pane(imageView);
+        gridPane.setStyle("-fx-background-color: white;");
+        gridPane.setMinSize(DISPLAY_SIZE, DISPLAY_SIZE);
+        gridPane.setMaxSize(DISPLAY_SIZE, DISPLAY_SIZE);
+        gridPane.setClip(new Rectangle(DISPLAY_SIZE, DISPLAY_SIZE));
+        gridPane.setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        gridPane.setOnMouseDragged(event -> {
+            setViewport(viewport.pan(dragX - event.getX(), dragY - event.getY()));
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        gridPane.setOnScroll(event -> {
+            if (event.getDeltaY() != 0) {
+                setViewport(viewport.zoomIn(event.getDeltaY() > 0 ? 1 : -1, event.getX(), event.getY()));
+            }
+        });
 
         HBox labels = new HBox(generationLabel, liveThreadsLabel);
         labels.setSpacing(100);
         labels.setPadding(new Insets(10, 10, 10, 10));
 
-        vBox = new VBox(createGridPane(), labels, controls);
-        stage.setScene(new Scene(vBox, 500, 700));
+        VBox vBox = new VBox(gridPane, labels, controls);
+        Scene scene = new Scene(vBox, 500, 700);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, this::handleKey);
+        stage.setScene(scene);
         stage.show();
     }
 
-    private void initializeMaxVisibleImageViewGrid(int gridSize) {
-        for (int y = 0 ; y < gridSize; y++) {
-            for (int x = 0 ; x < gridSize; x++) {
-                ImageView imageView = new ImageView(DEAD_CELL);
-                maxVisibleImageViewGrid[x][y] = imageView;
-            }
-        }
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+        viewportListener.run();
     }
 
-    private GridPane createGridPane() {
-        GridPane gridPane = new GridPane();
-        gridPane.setHgap(1);
-        gridPane.setVgap(1);
-        gridPane.setStyle("-fx-background-color: grey;");
-        gridPane.setAlignment(Pos.CENTER);
-
-        gridPane.setMinSize(500, 500);
-        gridPane.setMaxSize(500, 500);
-        gridPane.setPrefSize(500, 500);
-        return gridPane;
+    /**
+     * Sets the action run on the JavaFX application thread whenever the user pans or zooms
+     */
+    public void setViewportListener(Runnable viewportListener) {
+        this.viewportListener = viewportListener;
     }
 
     @Override
     public void print(Grid grid) {
-        updateGrid(grid);
-        liveCells = grid.getLiveCells();
-        generationLabel.setText("Generation: " + grid.getGeneration());
-        liveThreadsLabel.setText("Live cells: " + liveCells.size());
+        Frame frame = new Frame();
+        frame.capture(grid, viewport);
+        print(frame);
     }
 
-    private void updateGrid(Grid grid) {
-        int cellXTranspose = (grid.getVisibleColumns() - initialGridColumns) / 2;
-        int cellYTranspose = (grid.getVisibleRows() - initialGridRows) / 2;
+    /**
+     * Shows a frame captured from the grid, must be called on the JavaFX application thread
+     */
+    public void print(Frame frame) {
+        updateGrid(frame);
+        generationLabel.setText("Generation: " + frame.getGeneration());
+        liveThreadsLabel.setText("Live cells: " + frame.getPopulation());
+    }
 
-        if (displayedGrid.length == grid.getVisibleColumns() && displayedGrid[0].length == grid.getVisibleRows()) {
-            for (Cell cell : liveCells) {
-                if (isCellWithinTheVisibleGrid(grid, cell, cellXTranspose, cellYTranspose)) {
-                    displayedGrid[cellXTranspose + cell.getX()][cellYTranspose + cell.getY()].setImage(DEAD_CELL);
-                }
-            }
-            for (Cell cell : grid.getLiveCells()) {
-                if (isCellWithinTheVisibleGrid(grid, cell, cellXTranspose, cellYTranspose)) {
-                    displayedGrid[cellXTranspose + cell.getX()][cellYTranspose + cell.getY()].setImage(LIVE_CELL);
-                }
-            }
+    private void handleKey(KeyEvent event) {
+        switch (event.getCode()) {
+            case LEFT:
+                setViewport(viewport.pan(-PAN_STEP, 0));
+                break;
+            case RIGHT:
+                setViewport(viewport.pan(PAN_STEP, 0));
+                break;
+            case UP:
+                setViewport(viewport.pan(0, -PAN_STEP));
+                break;
+            case DOWN:
+                setViewport(viewport.pan(0, PAN_STEP));
+                break;
+            case PLUS:
+            case EQUALS:
+            case ADD:
+                setViewport(viewport.zoomIn(1, DISPLAY_SIZE / 2.0, DISPLAY_SIZE / 2.0));
+                break;
+            case MINUS:
+            case SUBTRACT:
+                setViewport(viewport.zoomIn(-1, DISPLAY_SIZE / 2.0, DISPLAY_SIZE / 2.0));
+                break;
+            default:
+                return;
         }
-        else {
-            GridPane gridPane = createGridPane();
-            double cellSize = Math.pow(2, 5 - (int) gridSizeControl.getValue());
-            ImageView[][] printableGrid = new ImageView[grid.getVisibleColumns()][grid.getVisibleRows()];
-            for (int y = 0; y < grid.getVisibleRows(); y++) {
-                for (int x = 0; x < grid.getVisibleColumns(); x++) {
-                    ImageView imageView = maxVisibleImageViewGrid[x][y];
-                    imageView.setFitWidth(cellSize);
-                    imageView.setFitHeight(cellSize);
-                    imageView.setImage(DEAD_CELL);
-                    printableGrid[x][y] = imageView;
-                    gridPane.add(imageView, x, y);
-                }
-            }
-            for (Cell cell : grid.getLiveCells()) {
-                if (isCellWithinTheVisibleGrid(grid, cell, cellXTranspose, cellYTranspose)) {
-                    printableGrid[cellXTranspose + cell.getX()][cellYTranspose + cell.getY()].setImage(LIVE_CELL);
+        event.consume();
+    }
+
+    private void updateGrid(Frame frame) {
+        int columns = frame.getColumns();
+        int rows = frame.getRows();
+        if (image == null || image.getWidth() != columns || image.getHeight() != rows) {
+            // The new pixels are transparent, so every block is written to the new image
+            image = new WritableImage(columns, rows);
+            pixels = new int[columns * rows];
+            dirtyRows = new boolean[rows];
+            imageView.setImage(image);
+        }
+        int shift = frame.getViewport().getShift();
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                int pixel = shade(frame.getBlockPopulation(x, y), shift);
+                if (pixels[y * columns + x] != pixel) {
+                    pixels[y * columns + x] = pixel;
+                    dirtyRows[y] = true;
                 }
             }
-            displayedGrid = printableGrid;
-            vBox.getChildren().set(0, gridPane);
         }
+        writeDirtyRows(columns);
+
+        Viewport frameViewport = frame.getViewport();
+        int pixelsPerBlock = frameViewport.getPixelsPerBlock();
+        imageView.setFitWidth(columns * pixelsPerBlock);
+        imageView.setFitHeight(rows * pixelsPerBlock);
+        imageView.setLayoutX(frameViewport.getOffsetX());
+        imageView.setLayoutY(frameViewport.getOffsetY());
     }
 
-    private boolean isCellWithinTheVisibleGrid(Grid grid, Cell cell, int cellXTranspose, int cellYTranspose) {
-        int x = cellXTranspose + cell.getX();
-        int y = cellYTranspose + cell.getY();
-        if (x >= 0 && x < grid.getVisibleColumns() && y >= 0 && y < grid.getVisibleRows()) {
-            return true;
+    /**
+     * Returns the color of a block, black for a single live cell and gray shades by density for larger blocks
+     */
+    private static int shade(long population, int shift) {
+        if (population == 0) {
+            return DEAD_CELL;
+        }
+        if (shift == 0) {
+            return LIVE_CELL;
         }
-        return false;
+        double density = population / Math.scalb(1.0, 2 * shift);
+        int gray = (int) (SPARSE_BLOCK_GRAY * (1 - density));
+        return LIVE_CELL | gray << 16 | gray << 8 | gray;
     }
 
-    private static Image createImage(Color color) {
-        WritableImage image = new WritableImage(1, 1);
-        image.getPixelWriter().setColor(0, 0, color);
-        return image;
+    /**
+     * Writes each run of consecutive dirty rows to the image with a single call
+     */
+    private void writeDirtyRows(int columns) {
+        int y = 0;
+        while (y < dirtyRows.length) {
+            if (!dirtyRows[y]) {
+                y++;
+                continue;
+            }
+            int start = y;
+            while (y < dirtyRows.length && dirtyRows[y]) {
+                dirtyRows[y++] = false;
+            }
+            image.getPixelWriter().setPixels(0, start, columns, y - start, PixelFormat.getIntArgbInstance(),
+                    pixels, start * columns, columns);
+        }
     }
 }
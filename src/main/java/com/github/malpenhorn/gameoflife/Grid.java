@@ -1,88 +1,204 @@
 package com.github.malpenhorn.gameoflife;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
 
 public class Grid {
+    private final EvolutionEngine engine;
     private int visibleColumns;
     private int visibleRows;
-    private Set<Cell> liveCells;
-    private int generation = 0;
+    private long generation = 0;
+    private final List<ChangeListener> changeListeners = new ArrayList<>();
+    private final ChangeSet changes = new ChangeSet();
+    private CycleDetector cycleDetector;
+    private SimulationMetrics metrics;
 
     public Grid(int visibleColumns, int visibleRows) {
+        this(visibleColumns, visibleRows, new NeighborCountEngine());
+    }
+
+    /**
+     * Creates a grid with Conway's rule on the given topology, a bounded or toroidal board has the size of the grid
+     */
+    public Grid(int visibleColumns, int visibleRows, Topology topology) {
+        this(visibleColumns, visibleRows, topology, Rule.CONWAY);
+    }
+
+    public Grid(int visibleColumns, int visibleRows, Topology topology, Rule rule) {
+        this(visibleColumns, visibleRows,
+                topology.createEngine(visibleColumns, visibleRows, EngineType.NEIGHBOR_COUNT, rule, 1));
+    }
+
+    public Grid(int visibleColumns, int visibleRows, EvolutionEngine engine) {
+        this.engine = engine;
         this.visibleColumns = visibleColumns;
         this.visibleRows = visibleRows;
-        this.liveCells = new HashSet<>();
     }
 
     /**
      * Creates a random pattern of live cells, within the visible grid, as the starting sequence for the game
      */
     public void initialize(double livePercentage) {
-        for (int x = 0; x < visibleColumns; x++) {
-            for (int y = 0; y < visibleRows; y++) {
-                if (Math.random() < livePercentage) {
-                    Cell cell = new Cell(x, y);
-                    liveCells.add(cell);
-                }
-            }
-        }
+        initialize(livePercentage, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a reproducible random pattern of live cells within the visible grid, the same seed gives the same pattern
+     */
+    public void initialize(double livePercentage, long seed) {
+        initialize(livePercentage, seed, 1);
+    }
+
+    /**
+     * Creates a reproducible random pattern of live cells within the visible grid, generated 64 cells at a time on
+     * the given number of threads and written into the engine a word at a time. The same seed gives the same pattern
+     * on any number of threads.
+     */
+    public void initialize(double livePercentage, long seed, int parallelism) {
+        SoupGenerator.fill(engine, visibleColumns, visibleRows, livePercentage, seed, parallelism);
+        resetCycleDetector();
     }
 
     /**
      * Sets the starting sequence for the game from a pre determined set of live cells
      */
     public void initialize(Set<Cell> liveCells) {
-        this.liveCells = liveCells;
+        engine.clear();
+        for (Cell cell : liveCells) {
+            engine.add(cell.getX(), cell.getY());
+        }
+        resetCycleDetector();
     }
 
     /**
-     * Evolves the grid by one generation.
-     * The rules for each live cell can be applied independently of each other.
-     * Thereby allowing us to parallelize the computation.
+     * Sets the starting sequence for the game from a pre determined set of live cells, the set may be taken over by the grid
+     */
+    public void initialize(LongCellSet liveCells) {
+        engine.load(liveCells);
+        resetCycleDetector();
+    }
+
+    /**
+     * Sets the starting sequence for the game from an RLE, plaintext or Macrocell pattern file, chosen by its extension
+     */
+    public void initialize(Path patternFile) throws IOException {
+        engine.clear();
+        PatternReader.read(patternFile, engine::add);
+        resetCycleDetector();
+    }
+
+    /**
+     * Evolves the grid by one generation using the grid's evolution engine.
      */
     public void evolve() {
-        liveCells = liveCells.parallelStream()
-                .map(this::getNextGenerationOfLiveCells)
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+        if (changeListeners.isEmpty() && cycleDetector == null && metrics == null) {
+            engine.evolve();
+            generation++;
+        }
+        else {
+            evolve(changes);
+        }
+    }
+
+    /**
+     * Evolves the grid by one generation and fills the change set with the cells that were born and died,
+     * which is then passed on to the change listeners
+     */
+    public void evolve(ChangeSet changes) {
+        changes.clear();
+        if (metrics != null) {
+            metrics.startGeneration(engine.getPopulation());
+        }
+        engine.evolve(changes);
         generation++;
+        if (metrics != null) {
+            metrics.endGeneration(changes);
+        }
+        changes.setGeneration(generation);
+        if (cycleDetector != null) {
+            cycleDetector.update(this, changes);
+        }
+        for (ChangeListener listener : changeListeners) {
+            listener.onChanges(this, changes);
+        }
     }
 
-    private Set<Cell> getNextGenerationOfLiveCells(Cell cell) {
-        Set<Cell> nextGeneration = new HashSet<>();
-        Set<Cell> deadNeighbors = getDeadNeighbors(cell);
+    /**
+     * Adds a listener that is told about the changes of every generation the grid evolves by one at a time,
+     * jumps are not reported
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
 
-        // 1. Any live cell with two or three live neighbours survives.
-        int numLiveNeighbors = 8 - deadNeighbors.size();
-        if (numLiveNeighbors > 1 && numLiveNeighbors < 4) {
-            nextGeneration.add(cell);
+    /**
+     * Evolves the grid by the given number of generations.
+     * Engines that support it, such as HashLifeEngine, advance by powers of two instead of one generation at a time.
+     */
+    public void jump(long generations) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("Cannot jump a negative number of generations: " + generations);
         }
+        engine.advance(generations);
+        generation += generations;
+        resetCycleDetector();
+    }
 
-        // 2. Any dead cell with three live neighbours becomes a live cell.
-        for (Cell neighbor : deadNeighbors) {
-            numLiveNeighbors = 8 - getDeadNeighbors(neighbor).size();
-            if (numLiveNeighbors == 3) {
-                nextGeneration.add(neighbor);
-            }
+    /**
+     * Sets the detector that follows the grid's generations to find out when it has become static or periodic,
+     * or removes it with null. The grid then evolves with a change set, so that the hash only costs as much
+     * as the changes. Initializing the grid and jumps rehash the live cells and restart the detection.
+     */
+    public void setCycleDetector(CycleDetector cycleDetector) {
+        this.cycleDetector = cycleDetector;
+        resetCycleDetector();
+    }
+
+    public CycleDetector getCycleDetector() {
+        return cycleDetector;
+    }
+
+    /**
+     * Evolves the grid one generation at a time until the cycle detector finds that it has settled, or for at most
+     * the given number of generations, and returns the number of generations it evolved
+     */
+    public long evolveUntilSettled(long maxGenerations) {
+        if (cycleDetector == null) {
+            throw new IllegalStateException("A cycle detector is needed to know when the grid has settled");
         }
+        long generations = 0;
+        while (generations < maxGenerations && !cycleDetector.isSettled()) {
+            evolve(changes);
+            generations++;
+        }
+        return generations;
+    }
+
+    /**
+     * Sets the metrics that every generation the grid evolves by one at a time is recorded in, or removes them with null.
+     * The grid then evolves with a change set, so that the births and deaths are recorded too.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-        // 3. All other live cells die in the next generation. Similarly, all other dead cells stay dead.
-        return nextGeneration;
+    public SimulationMetrics getMetrics() {
+        return metrics;
     }
 
-    private Set<Cell> getDeadNeighbors(Cell cell) {
-        Set<Cell> deadNeighbors = new HashSet<>();
-        for (int x = -1; x < 2; x++) {
-            for (int y = -1; y < 2; y++) {
-                Cell neighbor = new Cell(cell.getX() + x, cell.getY() + y);
-                if (!liveCells.contains(neighbor) && !neighbor.equals(cell)) {
-                    deadNeighbors.add(neighbor);
-                }
-            }
+    private void resetCycleDetector() {
+        if (cycleDetector != null) {
+            cycleDetector.reset(this);
         }
-        return deadNeighbors;
     }
 
     public int getVisibleColumns() {
@@ -101,11 +217,58 @@ public class Grid {
         this.visibleRows = visibleRows;
     }
 
+    /**
+     * Returns a read-only view of the live cells, it is only valid until the grid evolves
+     */
     public Set<Cell> getLiveCells() {
-        return liveCells;
+        // The engine's own storage may be behind the view, which it has to keep in step with its indexes
+        return Collections.unmodifiableSet(engine.getLiveCells().asSet());
     }
 
-    public int getGeneration() {
+    /**
+     * Returns the live cells, which may be the engine's own storage and must not be modified
+     */
+    public LongCellSet getLiveCellSet() {
+        return engine.getLiveCells();
+    }
+
+    public void forEachLiveCell(CellConsumer consumer) {
+        engine.forEachLiveCell(consumer);
+    }
+
+    /**
+     * Visits the live cells with x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1
+     */
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        engine.forEachLiveCellIn(x0, y0, x1, y1, consumer);
+    }
+
+    /**
+     * Visits the population of the aligned blocks of 2^shift by 2^shift cells within x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1,
+     * a block may be reported in parts that add up
+     */
+    public void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        engine.forEachBlockIn(x0, y0, x1, y1, shift, consumer);
+    }
+
+    public long getPopulation() {
+        return engine.getPopulation();
+    }
+
+    public long getGeneration() {
         return generation;
     }
+
+    void setGeneration(long generation) {
+        this.generation = generation;
+        resetCycleDetector();
+    }
+
+    public Topology getTopology() {
+        return engine.getTopology();
+    }
+
+    public EvolutionEngine getEngine() {
+        return engine;
+    }
 }
@@ -2,4 +2,12 @@ package com.github.malpenhorn.gameoflife;
 
 public interface GridPrinter {
     void print(Grid grid);
+
+    /**
+     * Prints the grid after it evolved with the given changes. Printers that remember what they showed last
+     * can update only the changed cells, by default the whole grid is printed again.
+     */
+    default void printChanges(Grid grid, ChangeSet changes) {
+        print(grid);
+    }
 }
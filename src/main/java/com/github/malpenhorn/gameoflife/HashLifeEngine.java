@@ -0,0 +1,461 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Evolves the grid with Gosper's HashLife algorithm.
+ * The universe is a quadtree of canonical nodes: every distinct square of cells exists once, found through a
+ * hash-consing table, and each node memoizes the result of evolving its center. Repetitive patterns therefore
+ * collapse into a small number of nodes and can be advanced by huge powers of two in a single step.
+ *
+ * The node table is garbage collected between steps when it grows beyond its bound, keeping only the nodes
+ * reachable from the current universe and dropping all memoized results.
+ */
+public class HashLifeEngine implements EvolutionEngine {
+    private final static int DEFAULT_MAX_NODES = 1 << 22;
+    private final static int MIN_ROOT_LEVEL = 3;
+    // The coordinates of a node at this level still fit in a long
+    private final static int MAX_LEVEL = 62;
+
+    private final static Node DEAD = new Node(0, 0);
+    private final static Node ALIVE = new Node(1, 1);
+
+    // Maps the 16 cells of a 4x4 square, bit y * 4 + x, to its 2x2 center one generation later, bit y * 2 + x
+    private final static byte[] CONWAY_CENTER_NEXT_GENERATION = createCenterNextGenerationTable(Rule.CONWAY);
+
+    private final int maxNodes;
+    private final Rule rule;
+    private final byte[] nextCenters;
+    private Node[] table;
+    private int tableSize;
+    private Node[] emptyNodes;
+    private Node root;
+
+    public HashLifeEngine() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * @param maxNodes the number of nodes the table may hold before it is garbage collected
+     */
+    public HashLifeEngine(int maxNodes) {
+        this(Rule.CONWAY, maxNodes);
+    }
+
+    public HashLifeEngine(Rule rule) {
+        this(rule, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Compiles the rule into a table of the next generation of the center of every 4x4 square,
+     * the only place the rule is applied
+     */
+    public HashLifeEngine(Rule rule, int maxNodes) {
+        rule.requireNoBirthWithoutNeighbors();
+        this.rule = rule;
+        this.nextCenters = rule.equals(Rule.CONWAY)
+                ? CONWAY_CENTER_NEXT_GENERATION : createCenterNextGenerationTable(rule);
+        this.maxNodes = maxNodes;
+        this.table = new Node[1 << 16];
+        this.emptyNodes = new Node[MAX_LEVEL + 2];
+        this.root = emptyNode(MIN_ROOT_LEVEL);
+    }
+
+    @Override
+    public void clear() {
+        root = emptyNode(MIN_ROOT_LEVEL);
+    }
+
+    @Override
+    public void add(int x, int y) {
+        while (!isWithinRoot(x, y)) {
+            root = expand(root);
+        }
+        long half = 1L << (root.level - 1);
+        root = setAlive(root, x + half, y + half);
+    }
+
+    @Override
+    public void evolve() {
+        step(0);
+    }
+
+    /**
+     * Advances the universe by stepping once for every bit set in the number of generations
+     */
+    @Override
+    public void advance(long generations) {
+        for (int j = 0; j < 63; j++) {
+            if ((generations & (1L << j)) != 0) {
+                step(j);
+            }
+        }
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    @Override
+    public long getPopulation() {
+        return root.population;
+    }
+
+    @Override
+    public void forEachLiveCell(CellConsumer consumer) {
+        long half = 1L << (root.level - 1);
+        visit(root, -half, -half, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Integer.MAX_VALUE + 1L, consumer);
+    }
+
+    /**
+     * Only descends into the quadtree nodes that overlap the region and contain live cells
+     */
+    @Override
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        long half = 1L << (root.level - 1);
+        visit(root, -half, -half, x0, y0, x1, y1, consumer);
+    }
+
+    /**
+     * Reports every quadtree node that lies within a block and the region as a whole, using its population count
+     */
+    @Override
+    public void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        long half = 1L << (root.level - 1);
+        visitBlocks(root, -half, -half, x0, y0, x1, y1, shift, consumer);
+    }
+
+    int getNodeCount() {
+        return tableSize;
+    }
+
+    private void step(int j) {
+        while (root.level < j + 2 || !isPadded(root)) {
+            root = expand(root);
+        }
+        // With the pattern in the center quarter it cannot grow past the center half that successor returns
+        root = successor(expand(root), j);
+        while (root.level > MIN_ROOT_LEVEL && isPadded(root)) {
+            root = center(root);
+        }
+        if (tableSize > maxNodes) {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * Returns the center of the node, half its size, evolved 2^j generations
+     */
+    private Node successor(Node node, int j) {
+        if (node.population == 0) {
+            return node.nw;
+        }
+        j = Math.min(j, node.level - 2);
+        if (node.result != null && node.resultStep == j) {
+            return node.result;
+        }
+
+        Node result;
+        if (node.level == 2) {
+            result = centerNextGeneration(node);
+        }
+        else {
+            Node nw = node.nw;
+            Node ne = node.ne;
+            Node sw = node.sw;
+            Node se = node.se;
+            Node c1 = successor(nw, j);
+            Node c2 = successor(join(nw.ne, ne.nw, nw.se, ne.sw), j);
+            Node c3 = successor(ne, j);
+            Node c4 = successor(join(nw.sw, nw.se, sw.nw, sw.ne), j);
+            Node c5 = successor(join(nw.se, ne.sw, sw.ne, se.nw), j);
+            Node c6 = successor(join(ne.sw, ne.se, se.nw, se.ne), j);
+            Node c7 = successor(sw, j);
+            Node c8 = successor(join(sw.ne, se.nw, sw.se, se.sw), j);
+            Node c9 = successor(se, j);
+            if (j < node.level - 2) {
+                // The nine sub results are already 2^j generations ahead, only their centers are needed
+                result = join(
+                        join(c1.se, c2.sw, c4.ne, c5.nw),
+                        join(c2.se, c3.sw, c5.ne, c6.nw),
+                        join(c4.se, c5.sw, c7.ne, c8.nw),
+                        join(c5.se, c6.sw, c8.ne, c9.nw));
+            }
+            else {
+                // Two rounds of 2^(level - 3) generations each
+                result = join(
+                        successor(join(c1, c2, c4, c5), j),
+                        successor(join(c2, c3, c5, c6), j),
+                        successor(join(c4, c5, c7, c8), j),
+                        successor(join(c5, c6, c8, c9), j));
+            }
+        }
+        node.result = result;
+        node.resultStep = j;
+        return result;
+    }
+
+    private Node centerNextGeneration(Node node) {
+        int cells = cellsOf(node.nw, 0) | cellsOf(node.ne, 2) | cellsOf(node.sw, 8) | cellsOf(node.se, 10);
+        int center = nextCenters[cells];
+        return join(leaf(center & 1), leaf(center & 2), leaf(center & 4), leaf(center & 8));
+    }
+
+    /**
+     * Returns the four cells of a 2x2 node as bits of a 4x4 square, starting at the given bit
+     */
+    private static int cellsOf(Node node, int offset) {
+        return (int) (node.nw.population << offset | node.ne.population << (offset + 1)
+                | node.sw.population << (offset + 4) | node.se.population << (offset + 5));
+    }
+
+    private Node setAlive(Node node, long x, long y) {
+        if (node.level == 0) {
+            return ALIVE;
+        }
+        long half = 1L << (node.level - 1);
+        if (y < half) {
+            if (x < half) {
+                return join(setAlive(node.nw, x, y), node.ne, node.sw, node.se);
+            }
+            return join(node.nw, setAlive(node.ne, x - half, y), node.sw, node.se);
+        }
+        if (x < half) {
+            return join(node.nw, node.ne, setAlive(node.sw, x, y - half), node.se);
+        }
+        return join(node.nw, node.ne, node.sw, setAlive(node.se, x - half, y - half));
+    }
+
+    private void visit(Node node, long x, long y, long x0, long y0, long x1, long y1, CellConsumer consumer) {
+        long size = 1L << node.level;
+        if (node.population == 0 || x >= x1 || y >= y1 || x + size <= x0 || y + size <= y0) {
+            return;
+        }
+        if (node.level == 0) {
+            consumer.accept((int) x, (int) y);
+            return;
+        }
+        long half = size >> 1;
+        visit(node.nw, x, y, x0, y0, x1, y1, consumer);
+        visit(node.ne, x + half, y, x0, y0, x1, y1, consumer);
+        visit(node.sw, x, y + half, x0, y0, x1, y1, consumer);
+        visit(node.se, x + half, y + half, x0, y0, x1, y1, consumer);
+    }
+
+    private void visitBlocks(Node node, long x, long y, long x0, long y0, long x1, long y1, int shift,
+                             BlockConsumer consumer) {
+        long size = 1L << node.level;
+        if (node.population == 0 || x >= x1 || y >= y1 || x + size <= x0 || y + size <= y0) {
+            return;
+        }
+        // Nodes are aligned to their size, so a node no larger than a block lies within a single block
+        if (node.level <= shift && x >= x0 && y >= y0 && x + size <= x1 && y + size <= y1) {
+            consumer.accept((int) (x >> shift), (int) (y >> shift), node.population);
+            return;
+        }
+        long half = size >> 1;
+        visitBlocks(node.nw, x, y, x0, y0, x1, y1, shift, consumer);
+        visitBlocks(node.ne, x + half, y, x0, y0, x1, y1, shift, consumer);
+        visitBlocks(node.sw, x, y + half, x0, y0, x1, y1, shift, consumer);
+        visitBlocks(node.se, x + half, y + half, x0, y0, x1, y1, shift, consumer);
+    }
+
+    private boolean isWithinRoot(int x, int y) {
+        long half = 1L << (root.level - 1);
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    /**
+     * Checks that all live cells are within the center half of the node
+     */
+    private static boolean isPadded(Node node) {
+        return node.nw.population == node.nw.se.population
+                && node.ne.population == node.ne.sw.population
+                && node.sw.population == node.sw.ne.population
+                && node.se.population == node.se.nw.population;
+    }
+
+    /**
+     * Surrounds the node with empty space, doubling its size around the same center
+     */
+    private Node expand(Node node) {
+        if (node.level >= MAX_LEVEL) {
+            throw new IllegalStateException("The universe has grown too large for HashLife");
+        }
+        Node empty = emptyNode(node.level - 1);
+        return join(
+                join(empty, empty, empty, node.nw),
+                join(empty, empty, node.ne, empty),
+                join(empty, node.sw, empty, empty),
+                join(node.se, empty, empty, empty));
+    }
+
+    private Node center(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    private Node emptyNode(int level) {
+        Node empty = emptyNodes[level];
+        if (empty == null) {
+            if (level == 0) {
+                return DEAD;
+            }
+            Node child = emptyNode(level - 1);
+            empty = join(child, child, child, child);
+            emptyNodes[level] = empty;
+        }
+        return empty;
+    }
+
+    /**
+     * Returns the canonical node with the given quadrants, creating it if it does not exist yet
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = hash(nw, ne, sw, se);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        Node node;
+        while ((node = table[slot]) != null) {
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        node = new Node(nw, ne, sw, se, hash);
+        table[slot] = node;
+        if (++tableSize > table.length / 2) {
+            rehash(table.length * 2);
+        }
+        return node;
+    }
+
+    private void rehash(int capacity) {
+        Node[] oldTable = table;
+        table = new Node[capacity];
+        for (Node node : oldTable) {
+            if (node != null) {
+                insert(node);
+            }
+        }
+    }
+
+    private void insert(Node node) {
+        int mask = table.length - 1;
+        int slot = node.hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = node;
+    }
+
+    /**
+     * Rebuilds the node table from the nodes reachable from the root. All memoized results are forgotten,
+     * so everything else becomes garbage for the JVM.
+     */
+    private void collectGarbage() {
+        int capacity = 1 << 16;
+        while (capacity < tableSize) {
+            capacity <<= 1;
+        }
+        table = new Node[capacity];
+        tableSize = 0;
+        emptyNodes = new Node[MAX_LEVEL + 2];
+        retain(root);
+    }
+
+    private void retain(Node node) {
+        if (node.level == 0 || isInTable(node)) {
+            return;
+        }
+        retain(node.nw);
+        retain(node.ne);
+        retain(node.sw);
+        retain(node.se);
+        node.result = null;
+        node.resultStep = -1;
+        insert(node);
+        if (++tableSize > table.length / 2) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private boolean isInTable(Node node) {
+        int mask = table.length - 1;
+        int slot = node.hash & mask;
+        while (table[slot] != null) {
+            if (table[slot] == node) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private static Node leaf(int alive) {
+        return alive != 0 ? ALIVE : DEAD;
+    }
+
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        long h = nw.hash;
+        h = h * 0x9E3779B97F4A7C15L + ne.hash;
+        h = h * 0x9E3779B97F4A7C15L + sw.hash;
+        h = h * 0x9E3779B97F4A7C15L + se.hash;
+        return (int) Cell.mix(h);
+    }
+
+    private static byte[] createCenterNextGenerationTable(Rule rule) {
+        byte[] centers = new byte[1 << 16];
+        for (int cells = 0; cells < centers.length; cells++) {
+            int center = 0;
+            for (int y = 1; y < 3; y++) {
+                for (int x = 1; x < 3; x++) {
+                    int liveNeighbors = 0;
+                    for (int dy = -1; dy < 2; dy++) {
+                        for (int dx = -1; dx < 2; dx++) {
+                            if (dx != 0 || dy != 0) {
+                                liveNeighbors += (cells >> ((y + dy) * 4 + x + dx)) & 1;
+                            }
+                        }
+                    }
+                    boolean alive = ((cells >> (y * 4 + x)) & 1) != 0;
+                    if (rule.isAliveInNextGeneration(alive, liveNeighbors)) {
+                        center |= 1 << ((y - 1) * 2 + (x - 1));
+                    }
+                }
+            }
+            centers[cells] = (byte) center;
+        }
+        return centers;
+    }
+
+    private static final class Node {
+        final Node nw;
+        final Node ne;
+        final Node sw;
+        final Node se;
+        final int level;
+        final long population;
+        final int hash;
+        Node result;
+        int resultStep = -1;
+
+        Node(long population, int hash) {
+            this.nw = null;
+            this.ne = null;
+            this.sw = null;
+            this.se = null;
+            this.level = 0;
+            this.population = population;
+            this.hash = hash;
+        }
+
+        Node(Node nw, Node ne, Node sw, Node se, int hash) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = nw.level + 1;
+            this.population = nw.population + ne.population + sw.population + se.population;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Records the generations of a grid so it can be moved back to any of them. The history is a ring of segments,
+ * each a keyframe of all live cells followed by the births and deaths of every generation after it, which are
+ * encoded like CheckpointWriter does as sorted packed coordinates with variable length differences. The cells are
+ * sorted row by row, the order in which the dense engines visit them, so sorting them is mostly a pass over runs
+ * that are already in order.
+ * <p>
+ * A new keyframe is taken once the changes since the last one take twice as many bytes as that keyframe, or after
+ * at most maxKeyframeInterval generations, so seeking decodes one keyframe and replays no more than twice its size
+ * in changes, and a pattern that changes little needs few keyframes. When the history takes more than its maximum
+ * number of bytes the oldest segments are evicted.
+ * <p>
+ * It is told about every generation as a ChangeListener of the grid. When the grid evolves from an earlier generation
+ * than the newest one recorded, after a seek, the generations after it are replaced. A generation that does not follow
+ * the one before, after a jump or a new initialization, cannot be replayed from the recorded ones, so the history
+ * starts over from it. The oldest and newest generations can be read from other threads, everything else belongs to
+ * the thread evolving the grid.
+ */
+public class History implements ChangeListener {
+    private final static int DEFAULT_MAX_KEYFRAME_INTERVAL = 1024;
+    // Changes may take this many times the bytes of their keyframe before the next keyframe is taken
+    private final static int KEYFRAME_RATIO = 2;
+    // Roughly what a segment takes besides its encoded cells, so that empty generations count as well
+    private final static int SEGMENT_OVERHEAD = 64;
+
+    private final long maxBytes;
+    private final int maxKeyframeInterval;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final EncodedCells encoder = new EncodedCells();
+    private long bytes;
+    private volatile long oldestGeneration = -1;
+    private volatile long newestGeneration = -1;
+    private long[] births = new long[0];
+    private long[] deaths = new long[0];
+
+    public History(long maxBytes) {
+        this(maxBytes, DEFAULT_MAX_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * @param maxBytes            the size of the encoded generations beyond which the oldest ones are evicted
+     * @param maxKeyframeInterval the most generations after a keyframe before the next one
+     */
+    public History(long maxBytes, int maxKeyframeInterval) {
+        if (maxKeyframeInterval < 1) {
+            throw new IllegalArgumentException("The keyframe interval must be positive: " + maxKeyframeInterval);
+        }
+        this.maxBytes = maxBytes;
+        this.maxKeyframeInterval = maxKeyframeInterval;
+    }
+
+    /**
+     * Starts recording the grid with a keyframe of its current generation. As initializing a grid is not reported to
+     * its listeners, the history must be attached again after the grid is initialized other than by a seek.
+     */
+    public void attach(Grid grid) {
+        grid.removeChangeListener(this);
+        grid.addChangeListener(this);
+        clear();
+        addKeyframe(grid);
+    }
+
+    public void detach(Grid grid) {
+        grid.removeChangeListener(this);
+    }
+
+    @Override
+    public void onChanges(Grid grid, ChangeSet changes) {
+        long generation = changes.getGeneration();
+        if (generation - 1 >= oldestGeneration && generation <= newestGeneration) {
+            truncateAfter(generation - 1);
+        }
+        Segment last = segments.peekLast();
+        if (last == null || generation != newestGeneration + 1 || last.deltaCount >= maxKeyframeInterval
+                || last.deltaBytes >= (long) KEYFRAME_RATIO * (last.keyframe.length + SEGMENT_OVERHEAD)) {
+            addKeyframe(grid);
+        }
+        else {
+            addDelta(last, changes);
+        }
+    }
+
+    /**
+     * Moves the grid back or forward to a recorded generation, decoding it from the nearest keyframe before it
+     */
+    public void seek(Grid grid, long generation) {
+        Segment segment = segmentOf(generation);
+        if (segment == null) {
+            throw new IllegalArgumentException("Generation " + generation + " is not in the history, which holds "
+                    + oldestGeneration + " to " + newestGeneration);
+        }
+        LongCellSet liveCells = new LongCellSet(segment.keyframeCells);
+        long cell = 0;
+        int position = 0;
+        for (int i = 0; i < segment.keyframeCells; i++) {
+            position = encoder.read(segment.keyframe, position);
+            cell += encoder.value;
+            liveCells.add(rowMajor(cell));
+        }
+        byte[] deltas = segment.deltas;
+        position = 0;
+        for (long g = segment.keyframeGeneration; g < generation; g++) {
+            position = encoder.read(deltas, position);
+            cell = 0;
+            for (long births = encoder.value; births > 0; births--) {
+                position = encoder.read(deltas, position);
+                cell += encoder.value;
+                liveCells.add(rowMajor(cell));
+            }
+            position = encoder.read(deltas, position);
+            cell = 0;
+            for (long deaths = encoder.value; deaths > 0; deaths--) {
+                position = encoder.read(deltas, position);
+                cell += encoder.value;
+                liveCells.remove(rowMajor(cell));
+            }
+        }
+        grid.initialize(liveCells);
+        grid.setGeneration(generation);
+    }
+
+    /**
+     * Returns the oldest generation that can be sought, or -1 if nothing is recorded
+     */
+    public long getOldestGeneration() {
+        return oldestGeneration;
+    }
+
+    /**
+     * Returns the newest generation that can be sought, or -1 if nothing is recorded
+     */
+    public long getNewestGeneration() {
+        return newestGeneration;
+    }
+
+    /**
+     * Returns the bytes taken by the encoded generations, including the room the newest segment has left to grow
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    int getKeyframeCount() {
+        return segments.size();
+    }
+
+    public void clear() {
+        segments.clear();
+        bytes = 0;
+        oldestGeneration = -1;
+        newestGeneration = -1;
+    }
+
+    private void addKeyframe(Grid grid) {
+        long[] cells = new long[(int) grid.getPopulation()];
+        int[] size = new int[1];
+        grid.forEachLiveCell((x, y) -> cells[size[0]++] = Cell.pack(y, x));
+        Arrays.parallelSort(cells);
+        encoder.reset();
+        encoder.writeSorted(cells, cells.length);
+        Segment segment = new Segment(grid.getGeneration(), encoder.toArray(), cells.length);
+        if (segments.isEmpty() || grid.getGeneration() != newestGeneration + 1) {
+            // Generations that do not follow each other cannot be replayed from one to the other
+            clear();
+            oldestGeneration = grid.getGeneration();
+        }
+        else {
+            Segment last = segments.peekLast();
+            bytes -= last.size();
+            last.trim();
+            bytes += last.size();
+        }
+        segments.addLast(segment);
+        bytes += segment.size();
+        newestGeneration = grid.getGeneration();
+        evict();
+    }
+
+    private void addDelta(Segment segment, ChangeSet changes) {
+        births = sortedCopy(births, changes.getBirthCount(), changes::getBirth);
+        deaths = sortedCopy(deaths, changes.getDeathCount(), changes::getDeath);
+        encoder.reset();
+        encoder.write(changes.getBirthCount());
+        encoder.writeSorted(births, changes.getBirthCount());
+        encoder.write(changes.getDeathCount());
+        encoder.writeSorted(deaths, changes.getDeathCount());
+        bytes -= segment.size();
+        segment.append(encoder);
+        bytes += segment.size();
+        newestGeneration = changes.getGeneration();
+        evict();
+    }
+
+    /**
+     * Evicts the oldest segments while the history is too large, the newest one is always kept
+     */
+    private void evict() {
+        while (bytes > maxBytes && segments.size() > 1) {
+            bytes -= segments.removeFirst().size();
+            oldestGeneration = segments.peekFirst().keyframeGeneration;
+        }
+    }
+
+    /**
+     * Forgets the generations after the given one
+     */
+    private void truncateAfter(long generation) {
+        while (segments.peekLast().keyframeGeneration > generation) {
+            bytes -= segments.removeLast().size();
+        }
+        Segment last = segments.peekLast();
+        bytes -= last.size();
+        int position = 0;
+        for (long g = last.keyframeGeneration; g < generation; g++) {
+            position = encoder.read(last.deltas, position);
+            for (long cells = encoder.value; cells > 0; cells--) {
+                position = encoder.read(last.deltas, position);
+            }
+            position = encoder.read(last.deltas, position);
+            for (long cells = encoder.value; cells > 0; cells--) {
+                position = encoder.read(last.deltas, position);
+            }
+        }
+        last.deltaBytes = position;
+        last.deltaCount = (int) (generation - last.keyframeGeneration);
+        bytes += last.size();
+        newestGeneration = generation;
+    }
+
+    private Segment segmentOf(long generation) {
+        if (generation < oldestGeneration || generation > newestGeneration) {
+            return null;
+        }
+        Iterator<Segment> newestFirst = segments.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Segment segment = newestFirst.next();
+            if (segment.keyframeGeneration <= generation) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Swaps the coordinates of a packed cell, so that cells sort by row and then by column, and back again
+     */
+    private static long rowMajor(long cell) {
+        return Long.rotateLeft(cell, 32);
+    }
+
+    private static long[] sortedCopy(long[] target, int count, IntToLongFunction cells) {
+        long[] copy = target.length >= count ? target : new long[Math.max(count, target.length * 2)];
+        for (int i = 0; i < count; i++) {
+            copy[i] = rowMajor(cells.applyAsLong(i));
+        }
+        Arrays.sort(copy, 0, count);
+        return copy;
+    }
+
+    /**
+     * A keyframe and the changes of the generations after it, one after the other in a growing byte array
+     */
+    private static final class Segment {
+        final long keyframeGeneration;
+        final byte[] keyframe;
+        final int keyframeCells;
+        byte[] deltas = new byte[0];
+        int deltaBytes;
+        int deltaCount;
+
+        Segment(long keyframeGeneration, byte[] keyframe, int keyframeCells) {
+            this.keyframeGeneration = keyframeGeneration;
+            this.keyframe = keyframe;
+            this.keyframeCells = keyframeCells;
+        }
+
+        void append(EncodedCells delta) {
+            if (deltaBytes + delta.size > deltas.length) {
+                deltas = Arrays.copyOf(deltas, Math.max(deltaBytes + delta.size, deltas.length * 2));
+            }
+            System.arraycopy(delta.bytes, 0, deltas, deltaBytes, delta.size);
+            deltaBytes += delta.size;
+            deltaCount++;
+        }
+
+        /**
+         * Returns the bytes the segment takes, counting all of its delta array, which grows by doubling
+         */
+        long size() {
+            return SEGMENT_OVERHEAD + keyframe.length + deltas.length;
+        }
+
+        void trim() {
+            deltas = Arrays.copyOf(deltas, deltaBytes);
+        }
+    }
+
+    /**
+     * Writes and reads unsigned LEB128 numbers, and sorted cells as the differences between them
+     */
+    private static final class EncodedCells {
+        byte[] bytes = new byte[256];
+        int size;
+        // The number read last
+        long value;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeSorted(long[] cells, int count) {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                write(cells[i] - previous);
+                previous = cells[i];
+            }
+        }
+
+        void write(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        /**
+         * Reads a number at the position into value and returns the position after it
+         */
+        int read(byte[] source, int position) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = source[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            this.value = value;
+            return position;
+        }
+    }
+}
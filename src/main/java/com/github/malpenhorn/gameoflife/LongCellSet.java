@@ -0,0 +1,255 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of cells stored as packed coordinates in a single open addressing table.
+ * There are no per-cell objects, each cell costs one long slot, which keeps tens of millions of live cells
+ * within a few hundred MB of heap.
+ */
+public class LongCellSet {
+    // Marks an empty slot, the cell that actually packs to this value is tracked separately
+    private final static long EMPTY = Long.MIN_VALUE;
+    private final static int MIN_CAPACITY = 16;
+    private final static float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsEmptyKey;
+
+    public LongCellSet() {
+        this(0);
+    }
+
+    public LongCellSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public boolean add(int x, int y) {
+        return add(Cell.pack(x, y));
+    }
+
+    public boolean add(long cell) {
+        if (cell == EMPTY) {
+            if (containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(cell);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == cell) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = cell;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(int x, int y) {
+        return contains(Cell.pack(x, y));
+    }
+
+    public boolean contains(long cell) {
+        if (cell == EMPTY) {
+            return containsEmptyKey;
+        }
+        int slot = slotOf(cell);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == cell) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean remove(int x, int y) {
+        return remove(Cell.pack(x, y));
+    }
+
+    public boolean remove(long cell) {
+        if (cell == EMPTY) {
+            if (!containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = false;
+            size--;
+            return true;
+        }
+        int slot = slotOf(cell);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == cell) {
+                shiftKeysBack(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all cells. The table keeps its capacity unless it has become far too large for its last contents.
+     */
+    public void clear() {
+        if (keys.length > MIN_CAPACITY && size < keys.length / 16) {
+            allocate(capacityFor(size));
+        }
+        else {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            containsEmptyKey = false;
+        }
+    }
+
+    /**
+     * Makes room for the given number of cells so that adding them does not rehash the table
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    public void forEach(CellConsumer consumer) {
+        if (containsEmptyKey) {
+            consumer.accept(Cell.unpackX(EMPTY), Cell.unpackY(EMPTY));
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                consumer.accept(Cell.unpackX(key), Cell.unpackY(key));
+            }
+        }
+    }
+
+    public void forEachPacked(LongConsumer consumer) {
+        if (containsEmptyKey) {
+            consumer.accept(EMPTY);
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Returns a Set view backed by this set, for callers that work with Cell objects
+     */
+    public Set<Cell> asSet() {
+        return new CellSetView(this);
+    }
+
+    Iterator<Cell> cellIterator() {
+        return new Iterator<Cell>() {
+            private final long[] table = keys;
+            private boolean emptyKeyPending = containsEmptyKey;
+            private int slot = nextOccupied(0);
+
+            @Override
+            public boolean hasNext() {
+                return emptyKeyPending || slot < table.length;
+            }
+
+            @Override
+            public Cell next() {
+                long cell;
+                if (emptyKeyPending) {
+                    emptyKeyPending = false;
+                    cell = EMPTY;
+                }
+                else if (slot < table.length) {
+                    cell = table[slot];
+                    slot = nextOccupied(slot + 1);
+                }
+                else {
+                    throw new NoSuchElementException();
+                }
+                return new Cell(Cell.unpackX(cell), Cell.unpackY(cell));
+            }
+
+            private int nextOccupied(int from) {
+                while (from < table.length && table[from] == EMPTY) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    private void shiftKeysBack(int slot) {
+        // Linear probing deletion: move later keys of the same probe chain into the freed slot
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = slotOf(keys[next]);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = slotOf(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+        containsEmptyKey = false;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotOf(long cell) {
+        return (int) Cell.mix(cell) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
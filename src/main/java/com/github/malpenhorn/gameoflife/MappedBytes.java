@@ -0,0 +1,104 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the bytes of a file through memory-mapped windows, so files beyond 2 GB can be read as well
+ */
+final class MappedBytes implements AutoCloseable {
+    private final static long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    MappedBytes(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+    /**
+     * Returns the next byte, or -1 at the end of the file
+     */
+    int next() throws IOException {
+        if (!window.hasRemaining()) {
+            long nextWindowStart = windowStart + window.capacity();
+            if (nextWindowStart >= size) {
+                return -1;
+            }
+            map(nextWindowStart);
+        }
+        return window.get() & 0xFF;
+    }
+
+    void skipLine() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c != '\n' && c != -1);
+    }
+
+    long readLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | nextOrFail();
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned LEB128 variable length number, seven bits per byte with the lowest bits first
+     */
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = nextOrFail();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    long position() {
+        return windowStart + window.position();
+    }
+
+    void seek(long position) throws IOException {
+        if (position >= windowStart && position <= windowStart + window.capacity()) {
+            window.position((int) (position - windowStart));
+        }
+        else {
+            map(position);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    private int nextOrFail() throws IOException {
+        int b = next();
+        if (b == -1) {
+            throw new IOException("Unexpected end of file");
+        }
+        return b;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
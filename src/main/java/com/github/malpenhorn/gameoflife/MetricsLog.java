@@ -0,0 +1,115 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * A rolling CSV log of SimulationMetrics. Every line holds the readings of the generations and frames since the
+ * line before, and once the file has grown beyond its maximum size it is renamed with the suffix .1, replacing
+ * the previous one, and a new file is started.
+ */
+public class MetricsLog implements Closeable {
+    private final static String HEADER = "timestamp_ms,generations,cells_processed,births,deaths,allocated_bytes,"
+            + "evolve_mean_us,evolve_p50_us,evolve_p99_us,evolve_max_us,frames,dropped_frames,render_mean_us,"
+            + "render_p99_us\n";
+
+    private final Path file;
+    private final long maxBytes;
+    private Writer out;
+    private long bytes;
+    // The readings as of the last line
+    private long generations;
+    private long cellsProcessed;
+    private long births;
+    private long deaths;
+    private long allocatedBytes;
+    private long evolveNanos;
+    private long frames;
+    private long droppedFrames;
+    private long renderNanos;
+    private long[] evolveLatency;
+    private long[] renderLatency;
+
+    /**
+     * @param maxBytes the size after which the file is rolled over
+     */
+    public MetricsLog(Path file, long maxBytes) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        open();
+    }
+
+    /**
+     * Writes a line with the readings since the last line, a reset of the metrics starts over from zero
+     */
+    public void write(SimulationMetrics metrics) {
+        if (metrics.getGenerations() < generations || metrics.getRenderedFrames() < frames) {
+            generations = cellsProcessed = births = deaths = allocatedBytes = evolveNanos = 0;
+            frames = droppedFrames = renderNanos = 0;
+            evolveLatency = null;
+            renderLatency = null;
+        }
+        long newGenerations = metrics.getGenerations() - generations;
+        long newFrames = metrics.getRenderedFrames() - frames;
+        long[] evolveSnapshot = metrics.getEvolveLatency().snapshot();
+        long[] renderSnapshot = metrics.getRenderLatency().snapshot();
+        String line = String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%d,%d,%.1f,%.1f\n",
+                System.currentTimeMillis(), newGenerations, metrics.getCellsProcessed() - cellsProcessed,
+                metrics.getBirths() - births, metrics.getDeaths() - deaths,
+                Math.max(metrics.getAllocatedBytes(), 0) - allocatedBytes,
+                mean(metrics.getEvolveNanos() - evolveNanos, newGenerations),
+                LatencyHistogram.percentile(evolveSnapshot, evolveLatency, 0.5) / 1e3,
+                LatencyHistogram.percentile(evolveSnapshot, evolveLatency, 0.99) / 1e3,
+                LatencyHistogram.percentile(evolveSnapshot, evolveLatency, 1) / 1e3,
+                newFrames, metrics.getDroppedFrames() - droppedFrames,
+                mean(metrics.getRenderNanos() - renderNanos, newFrames),
+                LatencyHistogram.percentile(renderSnapshot, renderLatency, 0.99) / 1e3);
+        generations = metrics.getGenerations();
+        cellsProcessed = metrics.getCellsProcessed();
+        births = metrics.getBirths();
+        deaths = metrics.getDeaths();
+        allocatedBytes = Math.max(metrics.getAllocatedBytes(), 0);
+        evolveNanos = metrics.getEvolveNanos();
+        frames = metrics.getRenderedFrames();
+        droppedFrames = metrics.getDroppedFrames();
+        renderNanos = metrics.getRenderNanos();
+        evolveLatency = evolveSnapshot;
+        renderLatency = renderSnapshot;
+        try {
+            out.write(line);
+            out.flush();
+            bytes += line.length();
+            if (bytes > maxBytes) {
+                out.close();
+                Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+                open();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII);
+        out.write(HEADER);
+        out.flush();
+        bytes = HEADER.length();
+    }
+
+    private static double mean(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1e3 / count;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Evolves the grid by counting live neighbors in a single pass over the live cells.
+ * Every live cell adds one to each of its eight neighbors in a primitive map keyed by packed coordinates,
+ * after which each candidate cell is visited exactly once to apply the rules.
+ * The live cells are kept in two LongCellSets that take turns as the next generation.
+ * The rule is compiled into a bitmask over the states of the map, bit ALIVE + n for a live cell with n neighbors.
+ * <p>
+ * A CellIndex of 64x64 tile bitmaps is updated with every birth and death found by that pass,
+ * so region queries only cost as much as the cells in the region.
+ */
+public class NeighborCountEngine implements EvolutionEngine {
+    private final NeighborCountMap neighborCounts = new NeighborCountMap();
+    private final LongConsumer countCell = this::countCell;
+    private final CellIndex index = new CellIndex();
+    private LongCellSet liveCells = new LongCellSet();
+    private LongCellSet nextGeneration = new LongCellSet();
+    private final Rule rule;
+    // Bit state is set when a cell in that state of the neighbor count map is alive in the next generation
+    private final int liveStates;
+
+    public NeighborCountEngine() {
+        this(Rule.CONWAY);
+    }
+
+    public NeighborCountEngine(Rule rule) {
+        rule.requireNoBirthWithoutNeighbors();
+        this.rule = rule;
+        this.liveStates = rule.getBirthMask() | rule.getSurvivalMask() << NeighborCountMap.ALIVE;
+    }
+
+    @Override
+    public void clear() {
+        liveCells.clear();
+        index.clear();
+    }
+
+    @Override
+    public void add(int x, int y) {
+        if (liveCells.add(x, y)) {
+            index.add(x, y);
+        }
+    }
+
+    @Override
+    public void load(LongCellSet liveCells) {
+        this.liveCells = liveCells;
+        index.clear();
+        liveCells.forEach(index::add);
+    }
+
+    @Override
+    public void evolve() {
+        evolve(null);
+    }
+
+    /**
+     * Records the births and deaths found by the counting pass, which also keep the index up to date
+     */
+    @Override
+    public void evolve(ChangeSet changes) {
+        neighborCounts.reset(liveCells.size() * 4);
+        liveCells.forEachPacked(countCell);
+
+        nextGeneration.clear();
+        nextGeneration.ensureCapacity(liveCells.size());
+        for (int slot = 0; slot < neighborCounts.capacity(); slot++) {
+            int state = neighborCounts.stateAt(slot);
+            if (state == 0) {
+                continue;
+            }
+            long cell = neighborCounts.keyAt(slot);
+            boolean alive = isAliveInNextGeneration(state);
+            if (alive) {
+                nextGeneration.add(cell);
+            }
+            if (alive != state >= NeighborCountMap.ALIVE) {
+                updateIndex(cell, alive);
+                if (changes != null) {
+                    if (alive) {
+                        changes.addBirth(cell);
+                    }
+                    else {
+                        changes.addDeath(cell);
+                    }
+                }
+            }
+        }
+
+        LongCellSet previousGeneration = liveCells;
+        liveCells = nextGeneration;
+        nextGeneration = previousGeneration;
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    @Override
+    public long getPopulation() {
+        return liveCells.size();
+    }
+
+    @Override
+    public void forEachLiveCell(CellConsumer consumer) {
+        liveCells.forEach(consumer);
+    }
+
+    @Override
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        index.forEachLiveCellIn(x0, y0, x1, y1, consumer);
+    }
+
+    @Override
+    public void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        index.forEachBlockIn(x0, y0, x1, y1, shift, consumer);
+    }
+
+    /**
+     * Returns the engine's own set of live cells, which must not be modified as the index would no longer match it
+     */
+    @Override
+    public LongCellSet getLiveCells() {
+        return liveCells;
+    }
+
+    private void countCell(long cell) {
+        neighborCounts.markAlive(cell);
+        neighborCounts.countNeighborsOf(Cell.unpackX(cell), Cell.unpackY(cell));
+    }
+
+    private void updateIndex(long cell, boolean alive) {
+        if (alive) {
+            index.add(Cell.unpackX(cell), Cell.unpackY(cell));
+        }
+        else {
+            index.remove(Cell.unpackX(cell), Cell.unpackY(cell));
+        }
+    }
+
+    private boolean isAliveInNextGeneration(int state) {
+        return (liveStates & (1 << state)) != 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from packed cell coordinates to the number of live neighbors of that cell.
+ * A live cell is marked by adding ALIVE to its own count, so a single byte holds everything the rules need.
+ * Slots with a zero count are empty, which lets the map be cleared and reused between generations.
+ */
+final class NeighborCountMap {
+    static final int ALIVE = 16;
+
+    private final static int MIN_CAPACITY = 16;
+    private final static float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private byte[] counts;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    NeighborCountMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Empties the map and makes sure it can hold the expected number of entries without growing
+     */
+    void reset(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length || capacity < keys.length / 8) {
+            allocate(capacity);
+        }
+        else {
+            Arrays.fill(counts, (byte) 0);
+            size = 0;
+        }
+    }
+
+    void markAlive(long cell) {
+        int slot = insert(cell);
+        counts[slot] += ALIVE;
+    }
+
+    /**
+     * Counts the cell at (x, y) as a live neighbor of each of the eight cells around it
+     */
+    void countNeighborsOf(int x, int y) {
+        for (int dx = -1; dx < 2; dx++) {
+            for (int dy = -1; dy < 2; dy++) {
+                if (dx != 0 || dy != 0) {
+                    int slot = insert(Cell.pack(x + dx, y + dy));
+                    counts[slot]++;
+                }
+            }
+        }
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the neighbor count of the cell in the slot, plus ALIVE if the cell itself is live, or 0 for an empty slot
+     */
+    int stateAt(int slot) {
+        return counts[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int insert(long cell) {
+        int slot = (int) Cell.mix(cell) & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == cell) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= resizeThreshold) {
+            grow();
+            return insert(cell);
+        }
+        keys[slot] = cell;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldCounts = counts;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = (int) Cell.mix(oldKeys[i]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new byte[capacity];
+        mask = capacity - 1;
+        size = 0;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / LOAD_FACTOR);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
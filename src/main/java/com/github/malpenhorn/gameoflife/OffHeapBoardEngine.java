@@ -0,0 +1,334 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Evolves a bounded or toroidal board like DenseBoardEngine, but keeps both generations off the Java heap, in direct
+ * buffers or in a memory-mapped file, so boards of billions of cells need neither a large heap nor a garbage collector
+ * that scans them. A file-backed board can be larger than the physical memory, the OS page cache decides which parts
+ * of it are in memory.
+ * <p>
+ * Direct buffers are limited by -XX:MaxDirectMemorySize, which defaults to the maximum heap size, so a board in direct
+ * memory that is larger than the heap needs that limit raised. A board in a file is not limited by it.
+ * <p>
+ * Closing the engine writes a file-backed board out to its file. Java cannot unmap a file, so the mapping itself is
+ * only released once the buffers have been garbage collected.
+ * <p>
+ * A generation is stored as one long per 64 cells of a row, in chunks of whole rows of at most 1 GiB each, as a buffer
+ * cannot hold more than 2 GiB. The board is evolved a row at a time: the rows above, at and below the current one are
+ * copied with bulk reads into three small arrays on the heap, padded with ghost words for the edges, the next row is
+ * computed into a fourth with the same SWAR adders as DenseBoardEngine, and written back with a bulk write.
+ * Every row is read and written once per generation, and the inner loop has no bounds checks or edge cases.
+ */
+public class OffHeapBoardEngine implements EvolutionEngine {
+    private final static long CHUNK_BYTES = 1L << 30;
+
+    private final int columns;
+    private final int rows;
+    private final Topology topology;
+    private final Rule rule;
+    private final boolean conway;
+    private final int birth;
+    private final int survival;
+    private final int words;
+    private final int rowsPerChunk;
+    private final long[] columnMasks;
+    private final long paddingBit;
+    // The chunks of both generations, the current one being generations[current]
+    private final LongBuffer[][] generations;
+    // The mapped chunks of both generations if the board is in a file, to write them out on close
+    private MappedByteBuffer[] mappings;
+    private int current;
+    private long population;
+    // The rows a generation is computed from and into, with a ghost word on either side
+    private long[] above;
+    private long[] row;
+    private long[] below;
+    private final long[] next;
+
+    /**
+     * Creates a board in direct buffers outside the heap, which together may take at most -XX:MaxDirectMemorySize
+     */
+    public OffHeapBoardEngine(int columns, int rows, Topology topology, Rule rule) {
+        this(columns, rows, topology, rule, CHUNK_BYTES);
+        allocateDirect();
+    }
+
+    /**
+     * Creates a board in the given file, which is created or truncated and mapped into memory. The file may be
+     * deleted once the engine is no longer used.
+     */
+    public OffHeapBoardEngine(int columns, int rows, Topology topology, Rule rule, Path file) throws IOException {
+        this(columns, rows, topology, rule, file, CHUNK_BYTES);
+    }
+
+    /**
+     * Creates a board in chunks of the given size, in direct buffers if the file is null
+     */
+    OffHeapBoardEngine(int columns, int rows, Topology topology, Rule rule, Path file, long chunkBytes)
+            throws IOException {
+        this(columns, rows, topology, rule, chunkBytes);
+        if (file == null) {
+            allocateDirect();
+        }
+        else {
+            map(file);
+        }
+    }
+
+    private OffHeapBoardEngine(int columns, int rows, Topology topology, Rule rule, long chunkBytes) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("A board needs at least one column and row: " + columns + "x" + rows);
+        }
+        if (topology == Topology.INFINITE) {
+            throw new IllegalArgumentException("An off-heap board cannot be infinite");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.topology = topology;
+        this.rule = rule;
+        this.conway = rule.equals(Rule.CONWAY);
+        this.birth = rule.getBirthMask();
+        this.survival = rule.getSurvivalMask();
+        this.words = (columns + 63) >>> 6;
+        this.rowsPerChunk = (int) Math.min(rows, Math.max(1, chunkBytes / ((long) words * Long.BYTES)));
+        this.columnMasks = BoardWords.columnMasks(columns);
+        this.paddingBit = BoardWords.paddingBit(columns);
+        this.above = new long[words + 2];
+        this.row = new long[words + 2];
+        this.below = new long[words + 2];
+        this.next = new long[words + 2];
+        this.generations = new LongBuffer[2][(rows + rowsPerChunk - 1) / rowsPerChunk];
+    }
+
+    @Override
+    public void clear() {
+        long[] zeros = new long[(int) Math.min((long) rowsPerChunk * words, 1 << 16)];
+        for (LongBuffer chunk : generations[current]) {
+            chunk.clear();
+            while (chunk.hasRemaining()) {
+                chunk.put(zeros, 0, Math.min(zeros.length, chunk.remaining()));
+            }
+        }
+        population = 0;
+    }
+
+    /**
+     * Adds the cell to the board, cells beyond the edges are ignored on a bounded board and wrap around on a torus
+     */
+    @Override
+    public void add(int x, int y) {
+        if (topology == Topology.TORUS) {
+            x = Math.floorMod(x, columns);
+            y = Math.floorMod(y, rows);
+        }
+        else if (x < 0 || x >= columns || y < 0 || y >= rows) {
+            return;
+        }
+        LongBuffer chunk = generations[current][y / rowsPerChunk];
+        int i = (y % rowsPerChunk) * words + (x >>> 6);
+        long cell = 1L << (x & 63);
+        long word = chunk.get(i);
+        if ((word & cell) == 0) {
+            chunk.put(i, word | cell);
+            population++;
+        }
+    }
+
+    /**
+     * ORs the cells into their word when they are aligned to one and lie on the board
+     */
+    @Override
+    public void addCells(int x, int y, long cells) {
+        if (x < 0 || x >= columns || (x & 63) != 0 || y < 0 || y >= rows
+                || (cells & ~columnMasks[(x >>> 6) + 1]) != 0) {
+            EvolutionEngine.super.addCells(x, y, cells);
+            return;
+        }
+        LongBuffer chunk = generations[current][y / rowsPerChunk];
+        int i = (y % rowsPerChunk) * words + (x >>> 6);
+        long word = chunk.get(i);
+        population += Long.bitCount(cells & ~word);
+        chunk.put(i, word | cells);
+    }
+
+    @Override
+    public void evolve() {
+        evolve(null);
+    }
+
+    @Override
+    public void evolve(ChangeSet changes) {
+        LongBuffer[] nextGeneration = generations[current ^ 1];
+        loadRow(above, topology == Topology.TORUS ? rows - 1 : -1);
+        loadRow(row, 0);
+        long nextPopulation = 0;
+        for (int y = 0; y < rows; y++) {
+            loadRow(below, y + 1 < rows ? y + 1 : topology == Topology.TORUS ? 0 : -1);
+            for (int w = 1; w <= words; w++) {
+                long word = nextWord(w) & columnMasks[w];
+                next[w] = word;
+                nextPopulation += Long.bitCount(word);
+                if (changes != null) {
+                    BoardWords.recordChanges(row[w] & columnMasks[w], word, (w - 1) << 6, y, changes);
+                }
+            }
+            LongBuffer chunk = nextGeneration[y / rowsPerChunk];
+            chunk.position((y % rowsPerChunk) * words);
+            chunk.put(next, 1, words);
+            long[] oldAbove = above;
+            above = row;
+            row = below;
+            below = oldAbove;
+        }
+        current ^= 1;
+        population = nextPopulation;
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    @Override
+    public Topology getTopology() {
+        return topology;
+    }
+
+    @Override
+    public long getPopulation() {
+        return population;
+    }
+
+    @Override
+    public void forEachLiveCell(CellConsumer consumer) {
+        forEachLiveCellIn(0, 0, columns, rows, consumer);
+    }
+
+    @Override
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        int fromX = Math.max(0, x0);
+        int toX = Math.min(columns, x1);
+        int fromY = Math.max(0, y0);
+        int toY = Math.min(rows, y1);
+        if (fromX >= toX || fromY >= toY) {
+            return;
+        }
+        int fromWord = fromX >>> 6;
+        int toWord = (toX - 1) >>> 6;
+        for (int y = fromY; y < toY; y++) {
+            LongBuffer chunk = generations[current][y / rowsPerChunk];
+            int rowStart = (y % rowsPerChunk) * words;
+            for (int w = fromWord; w <= toWord; w++) {
+                long word = chunk.get(rowStart + w) & BoardWords.rangeMask(fromX - (w << 6), toX - (w << 6));
+                while (word != 0) {
+                    consumer.accept((w << 6) + Long.numberOfTrailingZeros(word), y);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces a file-backed board out to its file and lets go of the buffers of both generations
+     */
+    @Override
+    public void close() {
+        if (mappings != null) {
+            for (MappedByteBuffer mapping : mappings) {
+                mapping.force();
+            }
+            mappings = null;
+        }
+        for (LongBuffer[] generation : generations) {
+            Arrays.fill(generation, null);
+        }
+    }
+
+    private void allocateDirect() {
+        for (LongBuffer[] generation : generations) {
+            for (int chunk = 0; chunk < generation.length; chunk++) {
+                ByteBuffer bytes;
+                try {
+                    bytes = ByteBuffer.allocateDirect((int) chunkBytes(chunk));
+                } catch (OutOfMemoryError e) {
+                    OutOfMemoryError error = new OutOfMemoryError("A " + columns + "x" + rows + " board does not fit in"
+                            + " direct memory, raise -XX:MaxDirectMemorySize or store the board in a file");
+                    error.initCause(e);
+                    throw error;
+                }
+                generation[chunk] = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+        }
+    }
+
+    /**
+     * Maps the chunks of both generations one after the other into the file, which grows with zeros to fit them.
+     * A mapping stays valid after its channel is closed.
+     */
+    private void map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            mappings = new MappedByteBuffer[2 * generations[0].length];
+            int mapping = 0;
+            long position = 0;
+            for (LongBuffer[] generation : generations) {
+                for (int chunk = 0; chunk < generation.length; chunk++) {
+                    long size = chunkBytes(chunk);
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                    mappings[mapping++] = bytes;
+                    generation[chunk] = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+                    position += size;
+                }
+            }
+        }
+    }
+
+    private long chunkBytes(int chunk) {
+        return Math.min(rowsPerChunk, rows - (long) chunk * rowsPerChunk) * words * Long.BYTES;
+    }
+
+    /**
+     * Reads a row of the current generation into the words between the ghost words, and fills the ghost words and
+     * the padding after the last column with the cells of the opposite edge on a torus. A row of -1 is dead.
+     */
+    private void loadRow(long[] target, int y) {
+        if (y < 0) {
+            // Only on a bounded board, whose ghost words are never written
+            Arrays.fill(target, 0);
+            return;
+        }
+        LongBuffer chunk = generations[current][y / rowsPerChunk];
+        chunk.position((y % rowsPerChunk) * words);
+        chunk.get(target, 1, words);
+        if (topology == Topology.TORUS) {
+            long first = target[1] & 1L;
+            long last = (target[words] >>> ((columns - 1) & 63)) & 1L;
+            target[0] = last << 63;
+            target[words + 1] = first;
+            target[words] |= -first & paddingBit;
+        }
+    }
+
+    private long nextWord(int w) {
+        if (conway) {
+            return Swar.nextGeneration(
+                    above[w], above[w - 1], above[w + 1],
+                    row[w], row[w - 1], row[w + 1],
+                    below[w], below[w - 1], below[w + 1]);
+        }
+        return Swar.nextGeneration(
+                above[w], above[w - 1], above[w + 1],
+                row[w], row[w - 1], row[w + 1],
+                below[w], below[w - 1], below[w + 1],
+                birth, survival);
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.nio.file.Path;
+
+/**
+ * The pattern file formats that PatternReader understands
+ */
+public enum PatternFormat {
+    /**
+     * Run length encoded cells, *.rle
+     */
+    RLE,
+    /**
+     * One character per cell, '.' for dead and 'O' for live, *.cells
+     */
+    PLAINTEXT,
+    /**
+     * Golly's quadtree format, *.mc
+     */
+    MACROCELL;
+
+    /**
+     * Guesses the format from the file extension, defaulting to RLE
+     */
+    public static PatternFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".cells") || name.endsWith(".txt")) {
+            return PLAINTEXT;
+        }
+        if (name.endsWith(".mc")) {
+            return MACROCELL;
+        }
+        return RLE;
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads RLE, plaintext and Macrocell pattern files. The file is memory-mapped and parsed byte by byte,
+ * handing every live cell straight to a CellConsumer, so no Strings or Cell objects are created and
+ * files of any size are read with constant extra memory. Macrocell files are the exception, their
+ * node table is kept in primitive arrays while the quadtree is expanded.
+ */
+public final class PatternReader {
+    private PatternReader() {
+    }
+
+    public static void read(Path file, CellConsumer consumer) throws IOException {
+        read(file, PatternFormat.of(file), consumer);
+    }
+
+    public static void read(Path file, PatternFormat format, CellConsumer consumer) throws IOException {
+        try (MappedBytes in = new MappedBytes(file)) {
+            switch (format) {
+                case RLE:
+                    readRle(in, consumer);
+                    break;
+                case PLAINTEXT:
+                    readPlaintext(in, consumer);
+                    break;
+                case MACROCELL:
+                    readMacrocell(in, consumer);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Comment lines start with '#', followed by a header line "x = m, y = n, rule = ..." and the runs of cells.
+     * 'b' is a run of dead cells, any other letter a run of live cells, '$' ends a row and '!' the pattern.
+     */
+    private static void readRle(MappedBytes in, CellConsumer consumer) throws IOException {
+        boolean lineStart = true;
+        boolean body = false;
+        int run = 0;
+        int x = 0;
+        int y = 0;
+        int c;
+        while ((c = in.next()) != -1) {
+            if (lineStart && !body && (c == '#' || c == 'x')) {
+                in.skipLine();
+                continue;
+            }
+            lineStart = c == '\n';
+            if (c >= '0' && c <= '9') {
+                run = run * 10 + (c - '0');
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                continue;
+            }
+            body = true;
+            int count = run == 0 ? 1 : run;
+            run = 0;
+            if (c == '!') {
+                return;
+            }
+            else if (c == '$') {
+                y += count;
+                x = 0;
+            }
+            else if (c == 'b' || c == '.') {
+                x += count;
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    consumer.accept(x++, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lines starting with '!' are comments, otherwise '.' is a dead cell and 'O' or '*' a live one
+     */
+    private static void readPlaintext(MappedBytes in, CellConsumer consumer) throws IOException {
+        boolean lineStart = true;
+        int x = 0;
+        int y = 0;
+        int c;
+        while ((c = in.next()) != -1) {
+            if (lineStart && c == '!') {
+                in.skipLine();
+                continue;
+            }
+            lineStart = false;
+            if (c == '\n') {
+                lineStart = true;
+                x = 0;
+                y++;
+            }
+            else if (c == 'O' || c == '*') {
+                consumer.accept(x++, y);
+            }
+            else if (c != '\r') {
+                x++;
+            }
+        }
+    }
+
+    /**
+     * After the "[M2]" line and '#' comments every line is a node, numbered from 1. A line of '.', '*' and '$'
+     * is an 8x8 leaf, otherwise it holds the level followed by the numbers of the nw, ne, sw and se children,
+     * with 0 for an empty child. The last node is the root, centered on the origin.
+     */
+    private static void readMacrocell(MappedBytes in, CellConsumer consumer) throws IOException {
+        MacrocellNodes nodes = new MacrocellNodes();
+        int c;
+        while ((c = in.next()) != -1) {
+            if (c == '[' || c == '#') {
+                in.skipLine();
+            }
+            else if (c == '.' || c == '*' || c == '$') {
+                nodes.addLeaf(readLeaf(in, c));
+            }
+            else if (c >= '0' && c <= '9') {
+                int level = (int) readNumber(in, c);
+                int nw = (int) readNumber(in, in.next());
+                int ne = (int) readNumber(in, in.next());
+                int sw = (int) readNumber(in, in.next());
+                int se = (int) readNumber(in, in.next());
+                nodes.addNode(level, nw, ne, sw, se);
+            }
+        }
+        if (nodes.size() > 0) {
+            int root = nodes.size();
+            long half = 1L << (nodes.levelOf(root) - 1);
+            nodes.expand(root, -half, -half, consumer);
+        }
+    }
+
+    private static long readLeaf(MappedBytes in, int c) throws IOException {
+        long cells = 0;
+        int x = 0;
+        int y = 0;
+        while (c != '\n' && c != -1) {
+            if (c == '$') {
+                x = 0;
+                y++;
+            }
+            else if (c == '*') {
+                cells |= 1L << (y * 8 + x++);
+            }
+            else if (c == '.') {
+                x++;
+            }
+            c = in.next();
+        }
+        return cells;
+    }
+
+    private static long readNumber(MappedBytes in, int c) throws IOException {
+        while (c == ' ' || c == '\t') {
+            c = in.next();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Malformed Macrocell node, expected a number");
+        }
+        long number = 0;
+        while (c >= '0' && c <= '9') {
+            number = number * 10 + (c - '0');
+            c = in.next();
+        }
+        return number;
+    }
+
+    private static final class MacrocellNodes {
+        private final static int LEAF_LEVEL = 3;
+
+        // Index 0 is the empty node
+        private byte[] levels = new byte[1024];
+        private int[] children = new int[4 * 1024];
+        private long[] leaves = new long[1024];
+        private int size;
+
+        void addLeaf(long cells) {
+            int node = allocate();
+            levels[node] = LEAF_LEVEL;
+            leaves[node] = cells;
+        }
+
+        void addNode(int level, int nw, int ne, int sw, int se) throws IOException {
+            if (level <= LEAF_LEVEL || level > 62 || Math.max(Math.max(nw, ne), Math.max(sw, se)) > size) {
+                throw new IOException("Malformed Macrocell node " + (size + 1));
+            }
+            int node = allocate();
+            levels[node] = (byte) level;
+            children[node * 4] = nw;
+            children[node * 4 + 1] = ne;
+            children[node * 4 + 2] = sw;
+            children[node * 4 + 3] = se;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int levelOf(int node) {
+            return levels[node];
+        }
+
+        void expand(int node, long x, long y, CellConsumer consumer) throws IOException {
+            if (node == 0) {
+                return;
+            }
+            if (levels[node] == LEAF_LEVEL) {
+                long cells = leaves[node];
+                while (cells != 0) {
+                    int bit = Long.numberOfTrailingZeros(cells);
+                    emit(x + (bit & 7), y + (bit >> 3), consumer);
+                    cells &= cells - 1;
+                }
+                return;
+            }
+            long half = 1L << (levels[node] - 1);
+            expand(children[node * 4], x, y, consumer);
+            expand(children[node * 4 + 1], x + half, y, consumer);
+            expand(children[node * 4 + 2], x, y + half, consumer);
+            expand(children[node * 4 + 3], x + half, y + half, consumer);
+        }
+
+        private static void emit(long x, long y, CellConsumer consumer) throws IOException {
+            if (x != (int) x || y != (int) y) {
+                throw new IOException("Macrocell pattern reaches beyond the grid's coordinate range");
+            }
+            consumer.accept((int) x, (int) y);
+        }
+
+        private int allocate() {
+            size++;
+            if (size == levels.length) {
+                levels = Arrays.copyOf(levels, size * 2);
+                children = Arrays.copyOf(children, size * 8);
+                leaves = Arrays.copyOf(leaves, size * 2);
+            }
+            return size;
+        }
+    }
+}
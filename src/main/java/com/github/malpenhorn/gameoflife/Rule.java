@@ -0,0 +1,123 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * An outer-totalistic rule in B/S notation, such as B3/S23 for Conway's Game of Life: a dead cell is born with
+ * one of the neighbor counts after the B, and a live cell survives with one of the counts after the S.
+ * The rule is compiled into a birth and a survival bitmask, bit n being set when n neighbors give a live cell,
+ * which the engines turn into their own lookup tables once so their inner loops do not call the rule.
+ */
+public final class Rule {
+    public final static Rule CONWAY = parse("B3/S23");
+    public final static Rule HIGHLIFE = parse("B36/S23");
+    public final static Rule DAY_AND_NIGHT = parse("B3678/S34678");
+    public final static Rule SEEDS = parse("B2/S");
+
+    private final int birth;
+    private final int survival;
+
+    private Rule(int birth, int survival) {
+        this.birth = birth;
+        this.survival = survival;
+    }
+
+    /**
+     * Parses a rulestring such as B36/S23, the B and S parts may come in either order and the slash may be left out
+     */
+    public static Rule parse(String rulestring) {
+        String notation = rulestring.trim().toUpperCase();
+        int birth = -1;
+        int survival = -1;
+        int i = 0;
+        while (i < notation.length()) {
+            char part = notation.charAt(i++);
+            int mask = 0;
+            while (i < notation.length() && Character.isDigit(notation.charAt(i))) {
+                int neighbors = notation.charAt(i++) - '0';
+                if (neighbors > 8) {
+                    throw new IllegalArgumentException("A cell has at most 8 neighbors: " + rulestring);
+                }
+                mask |= 1 << neighbors;
+            }
+            if (part == 'B' && birth < 0) {
+                birth = mask;
+            }
+            else if (part == 'S' && survival < 0) {
+                survival = mask;
+            }
+            else {
+                throw new IllegalArgumentException("Not a B/S rulestring: " + rulestring);
+            }
+            if (i < notation.length() && notation.charAt(i) == '/') {
+                i++;
+            }
+        }
+        if (birth < 0 || survival < 0) {
+            throw new IllegalArgumentException("Not a B/S rulestring: " + rulestring);
+        }
+        return new Rule(birth, survival);
+    }
+
+    /**
+     * Returns the neighbor counts a dead cell is born with, bit n for n neighbors
+     */
+    public int getBirthMask() {
+        return birth;
+    }
+
+    /**
+     * Returns the neighbor counts a live cell survives with, bit n for n neighbors
+     */
+    public int getSurvivalMask() {
+        return survival;
+    }
+
+    public boolean isAliveInNextGeneration(boolean alive, int liveNeighbors) {
+        return ((alive ? survival : birth) & (1 << liveNeighbors)) != 0;
+    }
+
+    /**
+     * Throws if dead cells without live neighbors are born, which would fill an unbounded grid in one generation
+     */
+    void requireNoBirthWithoutNeighbors() {
+        if ((birth & 1) != 0) {
+            throw new IllegalArgumentException("Rules with B0 are not supported on an unbounded grid: " + this);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Rule rule = (Rule) o;
+        return birth == rule.birth && survival == rule.survival;
+    }
+
+    @Override
+    public int hashCode() {
+        return birth * 512 + survival;
+    }
+
+    /**
+     * Returns the rule in B/S notation
+     */
+    @Override
+    public String toString() {
+        StringBuilder notation = new StringBuilder("B");
+        appendCounts(notation, birth);
+        notation.append("/S");
+        appendCounts(notation, survival);
+        return notation.toString();
+    }
+
+    private static void appendCounts(StringBuilder notation, int mask) {
+        for (int neighbors = 0; neighbors <= 8; neighbors++) {
+            if ((mask & (1 << neighbors)) != 0) {
+                notation.append(neighbors);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.malpenhorn.gameoflife;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures where the time of a simulation goes: the latency of every generation a Grid evolves, the cells it
+ * processed, born and died, the bytes the simulation thread allocated, and the time and drops of rendered frames.
+ * <p>
+ * A grid records into its metrics once set with {@link Grid#setMetrics}, jumps are not recorded. Recording costs two
+ * clock readings, two reads of the thread's allocation counter and a histogram increment per generation, about half
+ * a microsecond, which is below a percent of any generation that takes 50 microseconds or more, such as that of
+ * a 256x256 soup on a TileEngine, so the metrics can be left on.
+ * Births and deaths are only known when the grid evolves with a change set, for a change listener or a cycle detector.
+ * <p>
+ * Generations are recorded by the simulation thread and frames by the rendering thread, while the readings can be
+ * taken from any thread, over JMX once registered with {@link #registerMBean} or every so many generations in a
+ * rolling CSV log set with {@link #setLog}.
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+    private final static String DOMAIN = "com.github.malpenhorn.gameoflife";
+
+    private final com.sun.management.ThreadMXBean allocationCounter = allocationCounter();
+    private final LatencyHistogram evolveLatency = new LatencyHistogram();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+    private volatile long generations;
+    private volatile long cellsProcessed;
+    private volatile long births;
+    private volatile long deaths;
+    private volatile long allocatedBytes;
+    private volatile long evolveNanos;
+    private volatile long renderedFrames;
+    private volatile long droppedFrames;
+    private volatile long renderNanos;
+    // Only used by the simulation thread between the start and end of a generation
+    private long generationStart;
+    private long allocationStart;
+    private MetricsLog log;
+    private long logInterval;
+
+    /**
+     * Writes the readings of every interval generations to the log, or stops logging with null
+     */
+    public void setLog(MetricsLog log, long interval) {
+        if (log != null && interval < 1) {
+            throw new IllegalArgumentException("The log interval must be positive: " + interval);
+        }
+        this.log = log;
+        this.logInterval = interval;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under the type SimulationMetrics and the given name
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics as " + name, e);
+        }
+    }
+
+    public void unregisterMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister the metrics " + name, e);
+        }
+    }
+
+    void startGeneration(long population) {
+        cellsProcessed += population;
+        allocationStart = currentAllocatedBytes();
+        generationStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the generation started last, with the cells that were born and died in it
+     */
+    void endGeneration(ChangeSet changes) {
+        long nanos = System.nanoTime() - generationStart;
+        allocatedBytes += currentAllocatedBytes() - allocationStart;
+        evolveLatency.record(nanos);
+        evolveNanos += nanos;
+        births += changes.getBirthCount();
+        deaths += changes.getDeathCount();
+        long generations = ++this.generations;
+        if (log != null && generations % logInterval == 0) {
+            log.write(this);
+        }
+    }
+
+    /**
+     * Records a frame that took the given time to render
+     */
+    public void recordFrame(long renderNanos) {
+        renderLatency.record(renderNanos);
+        this.renderNanos += renderNanos;
+        renderedFrames++;
+    }
+
+    /**
+     * Records a frame that was replaced by a newer one before it was rendered
+     */
+    public void recordDroppedFrame() {
+        droppedFrames++;
+    }
+
+    @Override
+    public long getGenerations() {
+        return generations;
+    }
+
+    @Override
+    public long getCellsProcessed() {
+        return cellsProcessed;
+    }
+
+    @Override
+    public long getBirths() {
+        return births;
+    }
+
+    @Override
+    public long getDeaths() {
+        return deaths;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocationCounter != null ? allocatedBytes : -1;
+    }
+
+    @Override
+    public double getAllocatedBytesPerGeneration() {
+        long generations = this.generations;
+        return allocationCounter == null ? -1 : generations == 0 ? 0 : (double) allocatedBytes / generations;
+    }
+
+    @Override
+    public double getEvolveMeanMicros() {
+        long generations = this.generations;
+        return generations == 0 ? 0 : evolveNanos / 1e3 / generations;
+    }
+
+    @Override
+    public double getEvolveP50Micros() {
+        return evolveLatency.percentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getEvolveP99Micros() {
+        return evolveLatency.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getEvolveMaxMicros() {
+        return evolveLatency.percentile(1) / 1e3;
+    }
+
+    @Override
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    @Override
+    public double getRenderMeanMicros() {
+        long frames = renderedFrames;
+        return frames == 0 ? 0 : renderNanos / 1e3 / frames;
+    }
+
+    @Override
+    public double getRenderP99Micros() {
+        return renderLatency.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getRenderMaxMicros() {
+        return renderLatency.percentile(1) / 1e3;
+    }
+
+    /**
+     * Starts over from zero, readings recorded while resetting may be lost
+     */
+    @Override
+    public void reset() {
+        generations = 0;
+        cellsProcessed = 0;
+        births = 0;
+        deaths = 0;
+        allocatedBytes = 0;
+        evolveNanos = 0;
+        renderedFrames = 0;
+        droppedFrames = 0;
+        renderNanos = 0;
+        evolveLatency.clear();
+        renderLatency.clear();
+    }
+
+    LatencyHistogram getEvolveLatency() {
+        return evolveLatency;
+    }
+
+    LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    long getEvolveNanos() {
+        return evolveNanos;
+    }
+
+    long getRenderNanos() {
+        return renderNanos;
+    }
+
+    private long currentAllocatedBytes() {
+        return allocationCounter != null ? allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=SimulationMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Returns HotSpot's per-thread allocation counter, or null if the JVM has none or it is turned off
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * The readings of a SimulationMetrics as JMX attributes, since the start or the last reset.
+ * Latencies are in microseconds, and percentiles are accurate to within 12.5%.
+ */
+public interface SimulationMetricsMXBean {
+    long getGenerations();
+
+    /**
+     * Returns the live cells of all generations the grid evolved from
+     */
+    long getCellsProcessed();
+
+    /**
+     * Returns the cells born in the generations that were evolved with a change set
+     */
+    long getBirths();
+
+    /**
+     * Returns the cells that died in the generations that were evolved with a change set
+     */
+    long getDeaths();
+
+    /**
+     * Returns the bytes the simulation thread allocated while evolving, or -1 if the JVM cannot measure it
+     */
+    long getAllocatedBytes();
+
+    double getAllocatedBytesPerGeneration();
+
+    double getEvolveMeanMicros();
+
+    double getEvolveP50Micros();
+
+    double getEvolveP99Micros();
+
+    double getEvolveMaxMicros();
+
+    long getRenderedFrames();
+
+    /**
+     * Returns the frames that were replaced by a newer generation before they could be rendered
+     */
+    long getDroppedFrames();
+
+    double getRenderMeanMicros();
+
+    double getRenderP99Micros();
+
+    double getRenderMaxMicros();
+
+    void reset();
+}
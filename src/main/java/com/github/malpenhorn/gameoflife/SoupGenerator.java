@@ -0,0 +1,103 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Fills a rectangle with a random soup 64 cells at a time. Every band of 64 rows has its own SplittableRandom, seeded
+ * from the soup's seed and the band's index, so the bands can be generated in parallel and a seed gives the same soup
+ * on any number of threads.
+ * <p>
+ * A word of 64 cells that are each alive with probability p is made from a handful of random longs by going through
+ * the bits of p from the lowest to the highest: a random long is ORed in for a one and ANDed in for a zero, which
+ * makes every bit set with the probability 0.b1b2...bn. The density is rounded to 16 bits, so a word takes at most
+ * 16 random longs instead of 64 random doubles.
+ */
+final class SoupGenerator {
+    private final static int BAND_ROWS = 64;
+    private final static int DENSITY_BITS = 16;
+    // The bands generated in parallel before they are written to the engine, per thread
+    private final static int BANDS_PER_THREAD = 4;
+
+    private SoupGenerator() {
+    }
+
+    /**
+     * Adds a random soup of the given density to the cells with 0 &lt;= x &lt; columns and 0 &lt;= y &lt; rows
+     */
+    static void fill(EvolutionEngine engine, int columns, int rows, double density, long seed, int parallelism) {
+        int threshold = (int) Math.round(Math.max(0, Math.min(1, density)) * (1 << DENSITY_BITS));
+        if (threshold == 0 || columns <= 0 || rows <= 0) {
+            return;
+        }
+        int words = (columns + 63) >>> 6;
+        long lastWordMask = (columns & 63) == 0 ? -1L : (1L << (columns & 63)) - 1;
+        int bands = (rows + BAND_ROWS - 1) / BAND_ROWS;
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            // The engine is not thread safe, so the bands are generated in parallel in batches and written one by one
+            long[][] batch = new long[pool != null ? parallelism * BANDS_PER_THREAD : 1][];
+            for (int firstBand = 0; firstBand < bands; firstBand += batch.length) {
+                int batchBands = Math.min(batch.length, bands - firstBand);
+                int first = firstBand;
+                if (pool != null) {
+                    pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, batchBands).parallel().forEach(i ->
+                            batch[i] = generateBand(first + i, Math.min(BAND_ROWS, rows - (first + i) * BAND_ROWS),
+                                    words, lastWordMask, threshold, seed))));
+                }
+                else {
+                    batch[0] = generateBand(first, Math.min(BAND_ROWS, rows - first * BAND_ROWS), words, lastWordMask,
+                            threshold, seed);
+                }
+                for (int i = 0; i < batchBands; i++) {
+                    long[] band = batch[i];
+                    int originY = (first + i) * BAND_ROWS;
+                    for (int j = 0; j < band.length; j++) {
+                        if (band[j] != 0) {
+                            engine.addCells((j % words) << 6, originY + j / words, band[j]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the words of the rows of a band, row by row
+     */
+    private static long[] generateBand(int band, int bandRows, int words, long lastWordMask, int threshold, long seed) {
+        SplittableRandom random = new SplittableRandom(Cell.mix(seed + band * 0x9E3779B97F4A7C15L));
+        long[] cells = new long[bandRows * words];
+        for (int i = 0; i < cells.length; i++) {
+            long word = randomWord(random, threshold);
+            cells[i] = i % words == words - 1 ? word & lastWordMask : word;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns 64 random bits that are each set with the probability threshold / 2^16
+     */
+    static long randomWord(SplittableRandom random, int threshold) {
+        if (threshold >= 1 << DENSITY_BITS) {
+            return -1L;
+        }
+        long word = 0;
+        // Zeros below the lowest one would only AND into an empty word
+        for (int bit = Integer.numberOfTrailingZeros(threshold); bit < DENSITY_BITS; bit++) {
+            if ((threshold & (1 << bit)) != 0) {
+                word |= random.nextLong();
+            }
+            else {
+                word &= random.nextLong();
+            }
+        }
+        return word;
+    }
+}
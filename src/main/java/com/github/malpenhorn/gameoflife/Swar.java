@@ -0,0 +1,105 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * Applies the rules to 64 cells at once. Each long holds a row of 64 cells, bit i being the cell at x offset i,
+ * and the neighbor counts are added up bit-parallel with full adders (SIMD within a register).
+ */
+final class Swar {
+    private Swar() {
+    }
+
+    /**
+     * Returns the next generation of a row of 64 cells.
+     * The west and east words are the rows of the same height in the tiles to the left and right,
+     * only their bits next to the row matter.
+     */
+    static long nextGeneration(long above, long aboveWest, long aboveEast,
+                               long row, long rowWest, long rowEast,
+                               long below, long belowWest, long belowEast) {
+        long aboveLeft = (above << 1) | (aboveWest >>> 63);
+        long aboveRight = (above >>> 1) | (aboveEast << 63);
+        long left = (row << 1) | (rowWest >>> 63);
+        long right = (row >>> 1) | (rowEast << 63);
+        long belowLeft = (below << 1) | (belowWest >>> 63);
+        long belowRight = (below >>> 1) | (belowEast << 63);
+
+        // Sum each group of neighbors into ones and twos
+        long aboveOnes = aboveLeft ^ above ^ aboveRight;
+        long aboveTwos = (aboveLeft & above) | (aboveRight & (aboveLeft ^ above));
+        long belowOnes = belowLeft ^ below ^ belowRight;
+        long belowTwos = (belowLeft & below) | (belowRight & (belowLeft ^ below));
+        long sideOnes = left ^ right;
+        long sideTwos = left & right;
+
+        // Add the groups up into the bits of the neighbor count
+        long ones = aboveOnes ^ belowOnes ^ sideOnes;
+        long onesCarry = (aboveOnes & belowOnes) | (sideOnes & (aboveOnes ^ belowOnes));
+        long twosA = aboveTwos ^ belowTwos;
+        long twosB = sideTwos ^ onesCarry;
+        long twos = twosA ^ twosB;
+        long fours = (aboveTwos & belowTwos) | (sideTwos & onesCarry) | (twosA & twosB);
+
+        // 1. Any live cell with two or three live neighbours survives.
+        // 2. Any dead cell with three live neighbours becomes a live cell.
+        // A count of eight wraps around to zero in the two lowest bits, but then fours is set as well.
+        return twos & (ones | row) & ~fours;
+    }
+
+    /**
+     * Returns the next generation of a row of 64 cells under any rule. The neighbor counts are added up
+     * into four bit planes, and each count the rule gives a live cell for is matched against them.
+     */
+    static long nextGeneration(long above, long aboveWest, long aboveEast,
+                               long row, long rowWest, long rowEast,
+                               long below, long belowWest, long belowEast,
+                               int birth, int survival) {
+        long aboveLeft = (above << 1) | (aboveWest >>> 63);
+        long aboveRight = (above >>> 1) | (aboveEast << 63);
+        long left = (row << 1) | (rowWest >>> 63);
+        long right = (row >>> 1) | (rowEast << 63);
+        long belowLeft = (below << 1) | (belowWest >>> 63);
+        long belowRight = (below >>> 1) | (belowEast << 63);
+
+        long aboveOnes = aboveLeft ^ above ^ aboveRight;
+        long aboveTwos = (aboveLeft & above) | (aboveRight & (aboveLeft ^ above));
+        long belowOnes = belowLeft ^ below ^ belowRight;
+        long belowTwos = (belowLeft & below) | (belowRight & (belowLeft ^ below));
+        long sideOnes = left ^ right;
+        long sideTwos = left & right;
+
+        // Unlike for Conway's rule, counts of four and more need their exact value
+        long ones = aboveOnes ^ belowOnes ^ sideOnes;
+        long onesCarry = (aboveOnes & belowOnes) | (sideOnes & (aboveOnes ^ belowOnes));
+        long twosA = aboveTwos ^ belowTwos;
+        long twosB = sideTwos ^ onesCarry;
+        long twos = twosA ^ twosB;
+        long foursA = aboveTwos & belowTwos;
+        long foursB = sideTwos & onesCarry;
+        long foursC = twosA & twosB;
+        long fours = foursA ^ foursB ^ foursC;
+        long eights = (foursA & foursB) | (foursC & (foursA ^ foursB));
+
+        long next = 0;
+        for (int counts = birth | survival; counts != 0; counts &= counts - 1) {
+            int neighbors = Integer.numberOfTrailingZeros(counts);
+            // Eight neighbors is the only count with the eights bit, and the only other count without the lower bits
+            long matches;
+            if (neighbors == 8) {
+                matches = eights;
+            }
+            else {
+                matches = ((neighbors & 1) != 0 ? ones : ~ones) & ((neighbors & 2) != 0 ? twos : ~twos)
+                        & ((neighbors & 4) != 0 ? fours : ~fours);
+                if (neighbors == 0) {
+                    matches &= ~eights;
+                }
+            }
+            long cells = ((birth >> neighbors) & 1) != 0 ? ~row : 0;
+            if (((survival >> neighbors) & 1) != 0) {
+                cells |= row;
+            }
+            next |= matches & cells;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,555 @@
+package com.github.malpenhorn.gameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Evolves the grid as 64x64 tiles of bitboards, for dense patterns such as random soups.
+ * Each tile is a long per row, and the next generation is computed 64 cells at a time with bitwise adders.
+ * Tiles are allocated when live cells reach their border, so patterns can grow without bound,
+ * and tiles that have become empty are freed.
+ *
+ * With a parallelism above one the tiles are evolved on a ForkJoinPool of the engine's own, which is shut down when
+ * the engine is closed. Every tile writes only its own next generation, reading its neighbors' current rows as the
+ * halo, so the workers share no mutable state and there is nothing to merge afterwards.
+ *
+ * Tiles that have settled are not evaluated at all. Each tile remembers whether its last generation was
+ * unchanged, or equal to the generation before, and a tile whose whole neighborhood of nine tiles is unchanged
+ * keeps its cells, while one whose neighborhood cycles with period 2 simply swaps back to its previous generation.
+ *
+ * Every tile keeps its population, so zoomed out views can be drawn from whole tiles without visiting their cells.
+ *
+ * Freed and cleared tiles are kept as spares and reused for new tiles, so an engine that is cleared and loaded with
+ * one pattern after another, as in an ensemble of random soups, allocates no new tiles once it has warmed up.
+ */
+public class TileEngine implements EvolutionEngine {
+    final static int TILE_SHIFT = 6;
+    final static int TILE_SIZE = 1 << TILE_SHIFT;
+    private final static long[] EMPTY_ROWS = new long[TILE_SIZE];
+    // The number of tiles a fork join task evolves without splitting further
+    private final static int TILES_PER_TASK = 8;
+    private final static int COMPUTE = 0;
+    private final static int SKIP_UNCHANGED = 1;
+    private final static int SKIP_PERIOD_2 = 2;
+    // Up to 12 MiB of rows is kept in spare tiles
+    private final static int MAX_SPARE_TILES = 8192;
+
+    private final LongObjectMap<Tile> tilesByPosition = new LongObjectMap<>();
+    private final ForkJoinPool pool;
+    private final Rule rule;
+    // Conway's rule has its own adders, which only need the neighbor counts up to four
+    private final boolean conway;
+    private final int birth;
+    private final int survival;
+    private final List<Tile> tiles = new ArrayList<>();
+    private final List<Tile> spareTiles = new ArrayList<>();
+    private int skippedTiles;
+    private int evaluatedTiles;
+
+    public TileEngine() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism the number of threads evolving tiles, 1 evolves them on the calling thread
+     */
+    public TileEngine(int parallelism) {
+        this(Rule.CONWAY, parallelism);
+    }
+
+    public TileEngine(Rule rule, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        rule.requireNoBirthWithoutNeighbors();
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.rule = rule;
+        this.conway = rule.equals(Rule.CONWAY);
+        this.birth = rule.getBirthMask();
+        this.survival = rule.getSurvivalMask();
+    }
+
+    /**
+     * Shuts down the threads evolving the tiles in parallel
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public void clear() {
+        tilesByPosition.clear();
+        for (Tile tile : tiles) {
+            spare(tile);
+        }
+        tiles.clear();
+    }
+
+    @Override
+    public void add(int x, int y) {
+        Tile tile = getOrCreateTile(x >> TILE_SHIFT, y >> TILE_SHIFT);
+        long cell = 1L << (x & (TILE_SIZE - 1));
+        if ((tile.rows[y & (TILE_SIZE - 1)] & cell) == 0) {
+            tile.rows[y & (TILE_SIZE - 1)] |= cell;
+            tile.population++;
+        }
+        tile.unchanged = false;
+        tile.period2 = false;
+        tile.empty = false;
+        tile.modified = true;
+    }
+
+    /**
+     * ORs the cells into the rows of the one or two tiles they fall in
+     */
+    @Override
+    public void addCells(int x, int y, long cells) {
+        int offset = x & (TILE_SIZE - 1);
+        addToTileRow(x >> TILE_SHIFT, y, cells << offset);
+        if (offset != 0) {
+            addToTileRow((x >> TILE_SHIFT) + 1, y, cells >>> (TILE_SIZE - offset));
+        }
+    }
+
+    private void addToTileRow(int tileX, int y, long cells) {
+        if (cells == 0) {
+            return;
+        }
+        Tile tile = getOrCreateTile(tileX, y >> TILE_SHIFT);
+        int row = y & (TILE_SIZE - 1);
+        tile.population += Long.bitCount(cells & ~tile.rows[row]);
+        tile.rows[row] |= cells;
+        tile.unchanged = false;
+        tile.period2 = false;
+        tile.empty = false;
+        tile.modified = true;
+    }
+
+    @Override
+    public void evolve() {
+        evolve(null);
+    }
+
+    /**
+     * Records the changes of every tile that was not unchanged, while the tiles move to their next generation
+     */
+    @Override
+    public void evolve(ChangeSet changes) {
+        allocateBorderTiles();
+        if (pool != null && tiles.size() > TILES_PER_TASK) {
+            pool.invoke(new EvolveTask(tiles.toArray(new Tile[0]), 0, tiles.size()));
+        }
+        else {
+            for (Tile tile : tiles) {
+                evolveTile(tile);
+            }
+        }
+        skippedTiles = 0;
+        for (Tile tile : tiles) {
+            if (tile.mode != COMPUTE) {
+                skippedTiles++;
+            }
+            if (changes != null && tile.mode != SKIP_UNCHANGED) {
+                recordChanges(tile, changes);
+            }
+            tile.nextGeneration();
+        }
+        evaluatedTiles = tiles.size();
+        freeEmptyTiles();
+    }
+
+    @Override
+    public Rule getRule() {
+        return rule;
+    }
+
+    @Override
+    public long getPopulation() {
+        long population = 0;
+        for (Tile tile : tiles) {
+            population += tile.population;
+        }
+        return population;
+    }
+
+    @Override
+    public void forEachLiveCell(CellConsumer consumer) {
+        for (Tile tile : tiles) {
+            TileRows.visit(tile.rows, tile.x, tile.y, 0, TILE_SIZE, -1L, consumer);
+        }
+    }
+
+    @Override
+    public void forEachLiveCellIn(int x0, int y0, int x1, int y1, CellConsumer consumer) {
+        forEachTileIn(x0, y0, x1, y1, tile -> TileRows.visitClipped(tile.rows, tile.x, tile.y, x0, y0, x1, y1, consumer));
+    }
+
+    /**
+     * Reports the population of every tile that lies within a block and the region as a whole,
+     * smaller blocks and tiles on the edge of the region are counted row by row
+     */
+    @Override
+    public void forEachBlockIn(int x0, int y0, int x1, int y1, int shift, BlockConsumer consumer) {
+        forEachTileIn(x0, y0, x1, y1, tile -> {
+            long originX = (long) tile.x << TILE_SHIFT;
+            long originY = (long) tile.y << TILE_SHIFT;
+            if (shift >= TILE_SHIFT && originX >= x0 && originY >= y0
+                    && originX + TILE_SIZE <= x1 && originY + TILE_SIZE <= y1) {
+                if (tile.population != 0) {
+                    consumer.accept(tile.x >> (shift - TILE_SHIFT), tile.y >> (shift - TILE_SHIFT), tile.population);
+                }
+            }
+            else {
+                TileRows.countClipped(tile.rows, tile.x, tile.y, x0, y0, x1, y1, shift, consumer);
+            }
+        });
+    }
+
+    /**
+     * Only visits the tiles that overlap the region, looking them up directly when the region is small
+     */
+    private void forEachTileIn(int x0, int y0, int x1, int y1, Consumer<Tile> action) {
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int tileX0 = x0 >> TILE_SHIFT;
+        int tileY0 = y0 >> TILE_SHIFT;
+        int tileX1 = (x1 - 1) >> TILE_SHIFT;
+        int tileY1 = (y1 - 1) >> TILE_SHIFT;
+        long tilesInRegion = ((long) tileX1 - tileX0 + 1) * ((long) tileY1 - tileY0 + 1);
+        if (tilesInRegion <= tiles.size()) {
+            for (int tileY = tileY0; tileY <= tileY1; tileY++) {
+                for (int tileX = tileX0; tileX <= tileX1; tileX++) {
+                    Tile tile = tilesByPosition.get(Cell.pack(tileX, tileY));
+                    if (tile != null) {
+                        action.accept(tile);
+                    }
+                }
+            }
+        }
+        else {
+            for (Tile tile : tiles) {
+                if (tile.x >= tileX0 && tile.x <= tileX1 && tile.y >= tileY0 && tile.y <= tileY1) {
+                    action.accept(tile);
+                }
+            }
+        }
+    }
+
+    int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Returns the fraction of tiles the last generation skipped because their neighborhood had settled
+     */
+    public double getSkippedTileFraction() {
+        return evaluatedTiles == 0 ? 0 : (double) skippedTiles / evaluatedTiles;
+    }
+
+    /**
+     * Creates the empty neighbor tiles that cells on a tile's border may be born into
+     */
+    private void allocateBorderTiles() {
+        List<Tile> occupied = new ArrayList<>(tiles);
+        for (Tile tile : occupied) {
+            long[] rows = tile.rows;
+            long columns = 0;
+            for (long row : rows) {
+                columns |= row;
+            }
+            if (rows[0] != 0) {
+                getOrCreateTile(tile.x, tile.y - 1);
+            }
+            if (rows[TILE_SIZE - 1] != 0) {
+                getOrCreateTile(tile.x, tile.y + 1);
+            }
+            if ((columns & 1L) != 0) {
+                getOrCreateTile(tile.x - 1, tile.y);
+            }
+            if ((columns >>> 63) != 0) {
+                getOrCreateTile(tile.x + 1, tile.y);
+            }
+            if ((rows[0] & 1L) != 0) {
+                getOrCreateTile(tile.x - 1, tile.y - 1);
+            }
+            if ((rows[0] >>> 63) != 0) {
+                getOrCreateTile(tile.x + 1, tile.y - 1);
+            }
+            if ((rows[TILE_SIZE - 1] & 1L) != 0) {
+                getOrCreateTile(tile.x - 1, tile.y + 1);
+            }
+            if ((rows[TILE_SIZE - 1] >>> 63) != 0) {
+                getOrCreateTile(tile.x + 1, tile.y + 1);
+            }
+        }
+    }
+
+    private void evolveTile(Tile tile) {
+        boolean unchanged = true;
+        boolean period2 = true;
+        for (int dy = -1; dy < 2; dy++) {
+            for (int dx = -1; dx < 2; dx++) {
+                // Missing tiles have been empty for at least three generations
+                Tile neighbor = dx == 0 && dy == 0 ? tile : tilesByPosition.get(Cell.pack(tile.x + dx, tile.y + dy));
+                if (neighbor != null) {
+                    unchanged &= neighbor.unchanged;
+                    period2 &= neighbor.period2;
+                }
+            }
+        }
+        if (unchanged) {
+            tile.mode = SKIP_UNCHANGED;
+        }
+        else if (period2) {
+            tile.mode = SKIP_PERIOD_2;
+        }
+        else {
+            tile.mode = COMPUTE;
+            computeNextGeneration(tile);
+        }
+    }
+
+    private void computeNextGeneration(Tile tile) {
+        long[] north = rowsOf(tile.x, tile.y - 1);
+        long[] south = rowsOf(tile.x, tile.y + 1);
+        long[] west = rowsOf(tile.x - 1, tile.y);
+        long[] east = rowsOf(tile.x + 1, tile.y);
+        long[] northWest = rowsOf(tile.x - 1, tile.y - 1);
+        long[] northEast = rowsOf(tile.x + 1, tile.y - 1);
+        long[] southWest = rowsOf(tile.x - 1, tile.y + 1);
+        long[] southEast = rowsOf(tile.x + 1, tile.y + 1);
+        long[] rows = tile.rows;
+        long[] previous = tile.previous;
+        long[] next = tile.next;
+        int last = TILE_SIZE - 1;
+        long liveCells;
+        long changes;
+        long changesSincePrevious;
+
+        next[0] = nextRow(
+                north[last], northWest[last], northEast[last],
+                rows[0], west[0], east[0],
+                rows[1], west[1], east[1]);
+        liveCells = next[0];
+        changes = next[0] ^ rows[0];
+        changesSincePrevious = next[0] ^ previous[0];
+        for (int y = 1; y < last; y++) {
+            next[y] = nextRow(
+                    rows[y - 1], west[y - 1], east[y - 1],
+                    rows[y], west[y], east[y],
+                    rows[y + 1], west[y + 1], east[y + 1]);
+            liveCells |= next[y];
+            changes |= next[y] ^ rows[y];
+            changesSincePrevious |= next[y] ^ previous[y];
+        }
+        next[last] = nextRow(
+                rows[last - 1], west[last - 1], east[last - 1],
+                rows[last], west[last], east[last],
+                south[0], southWest[0], southEast[0]);
+        liveCells |= next[last];
+        changes |= next[last] ^ rows[last];
+        changesSincePrevious |= next[last] ^ previous[last];
+        int population = 0;
+        for (long row : next) {
+            population += Long.bitCount(row);
+        }
+        tile.nextPopulation = population;
+        tile.nextEmpty = liveCells == 0;
+        tile.nextUnchanged = changes == 0;
+        tile.nextPeriod2 = changesSincePrevious == 0;
+    }
+
+    private static void recordChanges(Tile tile, ChangeSet changes) {
+        long[] next = tile.mode == COMPUTE ? tile.next : tile.previous;
+        int originX = tile.x << TILE_SHIFT;
+        int originY = tile.y << TILE_SHIFT;
+        for (int y = 0; y < TILE_SIZE; y++) {
+            long births = next[y] & ~tile.rows[y];
+            long deaths = tile.rows[y] & ~next[y];
+            while (births != 0) {
+                changes.addBirth(originX + Long.numberOfTrailingZeros(births), originY + y);
+                births &= births - 1;
+            }
+            while (deaths != 0) {
+                changes.addDeath(originX + Long.numberOfTrailingZeros(deaths), originY + y);
+                deaths &= deaths - 1;
+            }
+        }
+    }
+
+    private long nextRow(long above, long aboveWest, long aboveEast,
+                         long row, long rowWest, long rowEast,
+                         long below, long belowWest, long belowEast) {
+        if (conway) {
+            return Swar.nextGeneration(above, aboveWest, aboveEast, row, rowWest, rowEast, below, belowWest, belowEast);
+        }
+        return Swar.nextGeneration(above, aboveWest, aboveEast, row, rowWest, rowEast, below, belowWest, belowEast,
+                birth, survival);
+    }
+
+    /**
+     * Frees the tiles that have been empty for three generations, so a missing tile can count as settled.
+     * Tiles next to live tiles are kept, as they would likely be allocated again right away.
+     */
+    private void freeEmptyTiles() {
+        int remaining = 0;
+        for (Tile tile : tiles) {
+            if (tile.empty && tile.unchanged && tile.period2 && !hasLiveNeighborTile(tile)) {
+                tilesByPosition.remove(Cell.pack(tile.x, tile.y));
+                spare(tile);
+            }
+            else {
+                tiles.set(remaining++, tile);
+            }
+        }
+        tiles.subList(remaining, tiles.size()).clear();
+    }
+
+    private void spare(Tile tile) {
+        if (spareTiles.size() < MAX_SPARE_TILES) {
+            spareTiles.add(tile);
+        }
+    }
+
+    private boolean hasLiveNeighborTile(Tile tile) {
+        for (int dy = -1; dy < 2; dy++) {
+            for (int dx = -1; dx < 2; dx++) {
+                Tile neighbor = tilesByPosition.get(Cell.pack(tile.x + dx, tile.y + dy));
+                if (neighbor != null && !neighbor.empty) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long[] rowsOf(int tileX, int tileY) {
+        Tile tile = tilesByPosition.get(Cell.pack(tileX, tileY));
+        return tile != null ? tile.rows : EMPTY_ROWS;
+    }
+
+    private Tile getOrCreateTile(int tileX, int tileY) {
+        long position = Cell.pack(tileX, tileY);
+        Tile tile = tilesByPosition.get(position);
+        if (tile == null) {
+            tile = spareTiles.isEmpty() ? new Tile(tileX, tileY) : spareTiles.remove(spareTiles.size() - 1).reset(tileX, tileY);
+            tilesByPosition.put(position, tile);
+            tiles.add(tile);
+        }
+        return tile;
+    }
+
+    private static final class Tile {
+        int x;
+        int y;
+        long[] rows = new long[TILE_SIZE];
+        long[] previous = new long[TILE_SIZE];
+        long[] next = new long[TILE_SIZE];
+        // A new tile has always been empty, which counts as settled
+        boolean empty = true;
+        boolean unchanged = true;
+        boolean period2 = true;
+        // Set when cells were added, so the previous generation did not lead to the current one
+        boolean modified;
+        int population;
+        int previousPopulation;
+        int mode;
+        int nextPopulation;
+        boolean nextEmpty;
+        boolean nextUnchanged;
+        boolean nextPeriod2;
+
+        Tile(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Turns a spare tile into a new, empty tile at another position
+         */
+        Tile reset(int x, int y) {
+            this.x = x;
+            this.y = y;
+            Arrays.fill(rows, 0);
+            Arrays.fill(previous, 0);
+            Arrays.fill(next, 0);
+            empty = true;
+            unchanged = true;
+            period2 = true;
+            modified = false;
+            population = 0;
+            previousPopulation = 0;
+            return this;
+        }
+
+        /**
+         * Moves the tile to the generation its mode has produced
+         */
+        void nextGeneration() {
+            long[] oldPrevious = previous;
+            if (mode == COMPUTE) {
+                previous = rows;
+                rows = next;
+                next = oldPrevious;
+                previousPopulation = population;
+                population = nextPopulation;
+                empty = nextEmpty;
+                unchanged = nextUnchanged;
+                period2 = nextPeriod2 && !modified;
+                modified = false;
+            }
+            else if (mode == SKIP_PERIOD_2) {
+                // The generation before last comes back, the unchanged flag stays as it was
+                previous = rows;
+                rows = oldPrevious;
+                int oldPreviousPopulation = previousPopulation;
+                previousPopulation = population;
+                population = oldPreviousPopulation;
+                empty = population == 0;
+                period2 = true;
+            }
+            else {
+                // The previous generation is already equal to the current one
+                period2 = true;
+            }
+        }
+    }
+
+    /**
+     * Evolves a range of tiles, splitting it in halves that idle workers can steal
+     */
+    private final class EvolveTask extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+
+        private final Tile[] tiles;
+        private final int from;
+        private final int to;
+
+        EvolveTask(Tile[] tiles, int from, int to) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    evolveTile(tiles[i]);
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new EvolveTask(tiles, from, middle), new EvolveTask(tiles, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.malpenhorn.gameoflife;
+
+import static com.github.malpenhorn.gameoflife.TileEngine.TILE_SHIFT;
+import static com.github.malpenhorn.gameoflife.TileEngine.TILE_SIZE;
+
+/**
+ * Visits the live cells of a 64x64 tile stored as one long per row, with bit i of a row holding x offset i
+ */
+final class TileRows {
+    private TileRows() {
+    }
+
+    /**
+     * Visits the live cells of the tile with x0 &lt;= x &lt; x1 and y0 &lt;= y &lt; y1
+     */
+    static void visitClipped(long[] rows, int tileX, int tileY, int x0, int y0, int x1, int y1,
+                             CellConsumer consumer) {
+        long originX = (long) tileX << TILE_SHIFT;
+        long originY = (long) tileY << TILE_SHIFT;
+        int fromRow = (int) Math.max(0, y0 - originY);
+        int toRow = (int) Math.min(TILE_SIZE, y1 - originY);
+        int fromBit = (int) Math.max(0, x0 - originX);
+        int toBit = (int) Math.min(TILE_SIZE, x1 - originX);
+        visit(rows, tileX, tileY, fromRow, toRow, columnMask(fromBit, toBit), consumer);
+    }
+
+    /**
+     * Counts the cells of each row of the tile within the region in segments of one block wide
+     */
+    static void countClipped(long[] rows, int tileX, int tileY, int x0, int y0, int x1, int y1, int shift,
+                             BlockConsumer consumer) {
+        long originX = (long) tileX << TILE_SHIFT;
+        long originY = (long) tileY << TILE_SHIFT;
+        int fromRow = (int) Math.max(0, y0 - originY);
+        int toRow = (int) Math.min(TILE_SIZE, y1 - originY);
+        int fromBit = (int) Math.max(0, x0 - originX);
+        int toBit = (int) Math.min(TILE_SIZE, x1 - originX);
+        long columns = columnMask(fromBit, toBit);
+        int segmentShift = Math.min(shift, TILE_SHIFT);
+        long segment = segmentShift == TILE_SHIFT ? -1L : (1L << (1 << segmentShift)) - 1;
+        for (int y = fromRow; y < toRow; y++) {
+            long row = rows[y] & columns;
+            int blockY = (int) ((originY + y) >> shift);
+            while (row != 0) {
+                int bit = Long.numberOfTrailingZeros(row) >> segmentShift << segmentShift;
+                long cells = row & (segment << bit);
+                consumer.accept((int) ((originX + bit) >> shift), blockY, Long.bitCount(cells));
+                row &= ~cells;
+            }
+        }
+    }
+
+    static void visit(long[] rows, int tileX, int tileY, int fromRow, int toRow, long columns, CellConsumer consumer) {
+        int originX = tileX << TILE_SHIFT;
+        int originY = tileY << TILE_SHIFT;
+        for (int y = fromRow; y < toRow; y++) {
+            long row = rows[y] & columns;
+            while (row != 0) {
+                consumer.accept(originX + Long.numberOfTrailingZeros(row), originY + y);
+                row &= row - 1;
+            }
+        }
+    }
+
+    private static long columnMask(int fromBit, int toBit) {
+        return (toBit == TILE_SIZE ? -1L : (1L << toBit) - 1) & (-1L << fromBit);
+    }
+}
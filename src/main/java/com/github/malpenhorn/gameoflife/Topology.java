@@ -0,0 +1,50 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * The shape of the space a grid's cells live in, by the names used on the command line
+ */
+public enum Topology {
+    /**
+     * An unbounded plane, cells outside the visible grid keep being simulated
+     */
+    INFINITE("infinite"),
+    /**
+     * A board of the size of the grid, cells beyond its edges are always dead
+     */
+    BOUNDED("bounded"),
+    /**
+     * A board of the size of the grid whose opposite edges are joined, so cells leaving one edge come back on the other
+     */
+    TORUS("torus");
+
+    private final String name;
+
+    Topology(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates the engine for a grid of the given size, boards of a fixed size always use a DenseBoardEngine
+     *
+     * @param engineType the engine used on an unbounded plane
+     */
+    public EvolutionEngine createEngine(int columns, int rows, EngineType engineType, Rule rule, int threads) {
+        if (this == INFINITE) {
+            return engineType.create(rule, threads);
+        }
+        return new DenseBoardEngine(columns, rows, this, rule);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Topology of(String name) {
+        for (Topology topology : values()) {
+            if (topology.name.equals(name)) {
+                return topology;
+            }
+        }
+        throw new IllegalArgumentException("Unknown topology: " + name);
+    }
+}
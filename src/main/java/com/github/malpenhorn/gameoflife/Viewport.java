@@ -0,0 +1,129 @@
+package com.github.malpenhorn.gameoflife;
+
+/**
+ * The part of the grid shown on a display of width x height pixels, given by the cell at its center and a zoom level.
+ * A zoom level of z shows 2^z cells per pixel, so negative levels magnify the cells and positive levels aggregate
+ * blocks of 2^z by 2^z cells into one pixel. Viewports are immutable, panning and zooming return a new one.
+ */
+public final class Viewport {
+    public final static int MIN_ZOOM = -5;
+    // Keeps the width of the view within the range of int cell coordinates
+    public final static int MAX_ZOOM = 22;
+
+    private final double centerX;
+    private final double centerY;
+    private final int zoom;
+    private final int width;
+    private final int height;
+
+    public Viewport(double centerX, double centerY, int zoom, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Viewport must be at least one pixel: " + width + "x" + height);
+        }
+        this.centerX = clamp(centerX, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        this.centerY = clamp(centerY, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        this.zoom = (int) clamp(zoom, MIN_ZOOM, MAX_ZOOM);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Moves the view by the given number of pixels
+     */
+    public Viewport pan(double dx, double dy) {
+        double cellsPerPixel = getCellsPerPixel();
+        return new Viewport(centerX + dx * cellsPerPixel, centerY + dy * cellsPerPixel, zoom, width, height);
+    }
+
+    /**
+     * Zooms in by the given number of levels, or out for a negative number, keeping the cell under the pixel in place
+     */
+    public Viewport zoomIn(int levels, double pixelX, double pixelY) {
+        int newZoom = (int) clamp(zoom - levels, MIN_ZOOM, MAX_ZOOM);
+        double scale = Math.scalb(1.0, newZoom);
+        double cellX = toCellX(pixelX);
+        double cellY = toCellY(pixelY);
+        return new Viewport(cellX - (pixelX - width / 2.0) * scale, cellY - (pixelY - height / 2.0) * scale,
+                newZoom, width, height);
+    }
+
+    public double toCellX(double pixelX) {
+        return centerX + (pixelX - width / 2.0) * getCellsPerPixel();
+    }
+
+    public double toCellY(double pixelY) {
+        return centerY + (pixelY - height / 2.0) * getCellsPerPixel();
+    }
+
+    public double getCellsPerPixel() {
+        return Math.scalb(1.0, zoom);
+    }
+
+    /**
+     * Returns log2 of the side of the blocks of cells that are aggregated into one pixel, 0 when zoomed in
+     */
+    public int getShift() {
+        return Math.max(zoom, 0);
+    }
+
+    public int getPixelsPerBlock() {
+        return 1 << Math.max(-zoom, 0);
+    }
+
+    /**
+     * Returns the number of blocks across the view, including the partially visible ones on both sides
+     */
+    public int getColumns() {
+        return (width + getPixelsPerBlock() - 1) / getPixelsPerBlock() + 1;
+    }
+
+    public int getRows() {
+        return (height + getPixelsPerBlock() - 1) / getPixelsPerBlock() + 1;
+    }
+
+    /**
+     * Returns the block coordinate of the leftmost visible block
+     */
+    public long getBlockX0() {
+        return (long) Math.floor(toCellX(0) / Math.scalb(1.0, getShift()));
+    }
+
+    public long getBlockY0() {
+        return (long) Math.floor(toCellY(0) / Math.scalb(1.0, getShift()));
+    }
+
+    /**
+     * Returns the pixel position of the left edge of the leftmost visible block, which is 0 or less
+     */
+    public double getOffsetX() {
+        return (Math.scalb((double) getBlockX0(), getShift()) - toCellX(0)) / getCellsPerPixel();
+    }
+
+    public double getOffsetY() {
+        return (Math.scalb((double) getBlockY0(), getShift()) - toCellY(0)) / getCellsPerPixel();
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchApplicationTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRunPatternWithInterval() throws IOException {
+        Path pattern = Files.write(directory.resolve("glider.rle"), "x = 3, y = 3\nbo$2bo$3o!".getBytes(StandardCharsets.US_ASCII));
+        Path snapshot = directory.resolve("glider.checkpoint");
+        BatchApplication.Options options = BatchApplication.Options.parse(new String[] {
+                "--pattern", pattern.toString(), "--generations", "10", "--interval", "4",
+                "--engine", "tile", "--threads", "2", "--snapshot", snapshot.toString()});
+        StringWriter out = new StringWriter();
+        BatchApplication.run(options, out);
+
+        String[] lines = out.toString().split("\n");
+        // Header, column names, the start, three intervals and the summary
+        assertEquals(7, lines.length);
+        assertTrue(lines[2].startsWith("0,5,"));
+        assertTrue(lines[3].startsWith("4,5,"));
+        assertTrue(lines[5].startsWith("10,5,"));
+        assertTrue(lines[6].startsWith("# 10 generations"));
+
+        Grid restored = new Grid(10, 10);
+        CheckpointReader.restore(snapshot, restored);
+        assertEquals(10, restored.getGeneration());
+        assertEquals(5, restored.getPopulation());
+    }
+
+    @Test
+    public void testRandomSeedIsReproducible() throws IOException {
+        String[] args = {"--size", "64", "--density", "0.3", "--seed", "42", "--generations", "20", "--interval", "20"};
+        StringWriter first = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(args), first);
+        StringWriter second = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(args), second);
+
+        String population = first.toString().split("\n")[3].split(",")[1];
+        assertEquals(population, second.toString().split("\n")[3].split(",")[1]);
+    }
+
+    @Test
+    public void testStopWhenSettled() throws IOException {
+        Path pattern = Files.write(directory.resolve("blinker.rle"), "x = 3, y = 1\n3o!".getBytes(StandardCharsets.US_ASCII));
+        StringWriter out = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(new String[] {
+                "--pattern", pattern.toString(), "--generations", "1000", "--interval", "100", "--max-period", "4",
+                "--census", directory.resolve("census.csv").toString()}), out);
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[3].startsWith("2,3,"));
+        assertEquals("# settled at generation 0 with period 2", lines[4]);
+        assertTrue(lines[5].startsWith("# 2 generations"));
+        assertEquals("# 1 objects in the census", lines[6]);
+        assertEquals("xp2_7,blinker,1", Files.readAllLines(directory.resolve("census.csv")).get(1));
+    }
+
+    @Test
+    public void testEnsemble() throws IOException {
+        Path census = directory.resolve("census.csv");
+        StringWriter out = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(new String[] {
+                "--soups", "12", "--size", "16", "--seed", "5", "--generations", "3000", "--threads", "3",
+                "--census", census.toString()}), out);
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0].contains("soups=12"));
+        assertEquals("outcome,soups,mean_lifespan,max_lifespan,mean_final_population", lines[1]);
+        assertTrue(lines[lines.length - 1].startsWith("# 12 soups"));
+        assertEquals("apgcode,name,count", Files.readAllLines(census).get(0));
+    }
+
+    @Test
+    public void testMetricsLogRecordsBirthsAndDeaths() throws IOException {
+        Path log = directory.resolve("metrics.csv");
+        BatchApplication.run(BatchApplication.Options.parse(new String[] {
+                "--size", "64", "--density", "0.3", "--seed", "5", "--generations", "20", "--interval", "10",
+                "--metrics", log.toString()}), new StringWriter());
+
+        List<String> lines = Files.readAllLines(log, StandardCharsets.US_ASCII);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("timestamp_ms,generations,cells_processed,births,deaths,"));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] columns = line.split(",");
+            assertEquals("10", columns[1]);
+            assertTrue(Long.parseLong(columns[3]) > 0);
+            assertTrue(Long.parseLong(columns[4]) > 0);
+        }
+    }
+
+    @Test
+    public void testResumeAfterCrash() throws IOException {
+        String[] seed = {"--size", "64", "--density", "0.3", "--seed", "9", "--interval", "10"};
+        StringWriter uninterrupted = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(concat(seed, "--generations", "60")), uninterrupted);
+
+        // A run that was killed after its checkpoint of generation 30, while writing the next one
+        Path checkpoint = directory.resolve("soup.checkpoint");
+        BatchApplication.run(BatchApplication.Options.parse(concat(seed, "--generations", "30",
+                "--snapshot", checkpoint.toString())), new StringWriter());
+        Files.write(checkpoint, new byte[] {CheckpointWriter.DELTA, 0, 0, 0, 0, 0, 0, 0, 0, 42, 7},
+                StandardOpenOption.APPEND);
+
+        StringWriter resumed = new StringWriter();
+        BatchApplication.run(BatchApplication.Options.parse(new String[] {
+                "--size", "64", "--interval", "10", "--generations", "60", "--resume", checkpoint.toString()}), resumed);
+        String[] lines = resumed.toString().split("\n");
+        assertTrue(lines[2].startsWith("30,"));
+        assertTrue(lines[lines.length - 1].startsWith("# 30 generations"));
+        String[] expected = uninterrupted.toString().split("\n");
+        assertEquals(expected[expected.length - 2].split(",")[1], lines[lines.length - 2].split(",")[1]);
+
+        Grid restored = new Grid(64, 64);
+        CheckpointReader.restore(checkpoint, restored);
+        assertEquals(60, restored.getGeneration());
+        assertEquals(Long.parseLong(expected[expected.length - 2].split(",")[1]), restored.getPopulation());
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {"--engine", "x"}));
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {"--size"}));
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {"--seed", "a"}));
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {
+                "--resume", "a.checkpoint", "--snapshot", "b.checkpoint"}));
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {
+                "--soups", "10", "--topology", "torus", "--storage", "off-heap"}));
+        assertThrows(IllegalArgumentException.class, () -> BatchApplication.Options.parse(new String[] {
+                "--soups", "10", "--metrics", "metrics.csv"}));
+    }
+
+    private static String[] concat(String[] args, String... more) {
+        String[] all = Arrays.copyOf(args, args.length + more.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+}
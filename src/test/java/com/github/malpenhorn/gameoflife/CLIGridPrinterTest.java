@@ -0,0 +1,81 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CLIGridPrinterTest {
+    /**
+     *      *  .
+     *      .  *
+     */
+    @Test
+    public void testGlyphs() {
+        LongCellSet cells = new LongCellSet();
+        cells.add(0, 0);
+        cells.add(1, 1);
+        Grid grid = new Grid(2, 2);
+        grid.initialize(cells);
+
+        assertTrue(print(grid, CLIGridPrinter.Glyphs.HALF_BLOCK).contains("\u001b[1;1H\u2580\u2584"));
+        assertTrue(print(grid, CLIGridPrinter.Glyphs.QUADRANT).contains("\u001b[1;1H\u259A"));
+        assertTrue(print(grid, CLIGridPrinter.Glyphs.BRAILLE).contains("\u001b[1;1H\u2811"));
+    }
+
+    /**
+     *      .  .  .         .  *  .
+     *      *  *  *   ->    .  *  .
+     *      .  .  .         .  *  .
+     *      .  .  .         .  .  .
+     */
+    @Test
+    public void testOnlyChangedCharactersArePrinted() {
+        LongCellSet blinker = new LongCellSet();
+        blinker.add(0, 1);
+        blinker.add(1, 1);
+        blinker.add(2, 1);
+        Grid grid = new Grid(3, 4);
+        grid.initialize(blinker);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CLIGridPrinter printer = new CLIGridPrinter(out, CLIGridPrinter.Glyphs.HALF_BLOCK);
+        printer.print(grid);
+        out.reset();
+
+        ChangeSet changes = new ChangeSet();
+        grid.evolve(changes);
+        printer.printChanges(grid, changes);
+
+        // The top row of characters goes from lower halves to a single full block, the bottom row gains an upper half
+        String frame = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertFalse(frame.contains("\u001b[2J"));
+        assertTrue(frame.startsWith("\u001b[1;1H \u2588 \u001b[2;2H\u2580\u001b[3;1H"));
+        assertTrue(frame.contains("Generation: 1"));
+        assertTrue(frame.contains("Live cells: 3"));
+
+        out.reset();
+        printer.print(grid);
+        assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).startsWith("\u001b[3;1HGeneration: 1"));
+    }
+
+    @Test
+    public void testResizeClearsScreen() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CLIGridPrinter printer = new CLIGridPrinter(out, CLIGridPrinter.Glyphs.HALF_BLOCK);
+        printer.print(new Grid(4, 4));
+        out.reset();
+        printer.printChanges(new Grid(6, 6), new ChangeSet());
+
+        String frame = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(frame.startsWith("\u001b[2J\u001b[1;1H      \u001b[2;1H      \u001b[3;1H      \u001b[4;1HGeneration: 0"));
+    }
+
+    private static String print(Grid grid, CLIGridPrinter.Glyphs glyphs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CLIGridPrinter(out, glyphs).print(grid);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CensusTest {
+    @Test
+    public void testKnownObjects() {
+        LongCellSet cells = new LongCellSet();
+        // Each object is placed in its own 20 by 20 square, some of them rotated or in another phase
+        addObject(cells, 0, 0, "**", "**");
+        addObject(cells, 20, 0, "**", "**");
+        addObject(cells, 40, 0, "*", "*", "*");
+        addObject(cells, 60, 0, ".*.", "..*", "***");
+        addObject(cells, 80, 0, "*.*", ".**", ".*.");
+        addObject(cells, 0, 20, ".**.", "*..*", ".**.");
+        addObject(cells, 40, 20, ".**.", "*..*", ".*.*", "..*.");
+        addObject(cells, 60, 20, ".**", "*.*", ".*.");
+        addObject(cells, 80, 20, ".*.", "*.*", ".*.");
+        addObject(cells, 0, 40, "**.", "*.*", ".**");
+        addObject(cells, 20, 40, ".**.", "*..*", "*..*", ".**.");
+        addObject(cells, 40, 40, ".***", "***.");
+        addObject(cells, 60, 40, "**..", "**..", "..**", "..**");
+        Census census = new Census();
+        census.add(cells);
+
+        assertEquals(2, census.getCount("xs4_33"));
+        assertEquals(1, census.getCount("xp2_7"));
+        assertEquals(2, census.getCount("xq4_153"));
+        assertEquals(1, census.getCount("xs6_696"));
+        assertEquals(1, census.getCount("xs7_2596"));
+        assertEquals(1, census.getCount("xs5_253"));
+        assertEquals(1, census.getCount("xs4_252"));
+        assertEquals(1, census.getCount("xs6_356"));
+        assertEquals(1, census.getCount("xs8_6996"));
+        assertEquals(1, census.getCount("xp2_7e"));
+        assertEquals(1, census.getCount("xp2_318c"));
+        assertEquals(13, census.getObjectCount());
+        assertEquals("glider", Census.getName("xq4_153"));
+
+        census.add(new LongCellSet());
+        assertEquals(13, census.getObjectCount());
+    }
+
+    /**
+     * An R-pentomino and its next generation, which do not repeat within MAX_PERIOD generations either
+     */
+    @Test
+    public void testPhasesOfLongLivedObject() {
+        LongCellSet pentomino = new LongCellSet();
+        addObject(pentomino, 0, 0, ".**", "**.", ".*.");
+        Grid grid = new Grid(10, 10);
+        grid.initialize(pentomino);
+        grid.evolve();
+        LongCellSet nextGeneration = new LongCellSet();
+        grid.forEachLiveCell((x, y) -> nextGeneration.add(x + 100, y + 100));
+        Census census = new Census();
+        census.add(pentomino);
+        census.add(nextGeneration);
+
+        assertEquals(1, census.getCount("zz_s5"));
+        assertEquals(1, census.getCount("zz_s" + nextGeneration.size()));
+        assertEquals(2, census.getObjectCount());
+    }
+
+    @Test
+    public void testEncoding() {
+        LongCellSet cells = new LongCellSet();
+        // Columns 1 and 7 with five empty columns between them, and a second strip
+        addObject(cells, 0, 0, "*.....*", ".......", ".......", ".......", ".......", "*......");
+        long[] packed = new long[cells.size()];
+        int[] size = new int[1];
+        cells.forEachPacked(cell -> packed[size[0]++] = cell);
+
+        assertEquals("1y11z1", Census.encode(packed));
+    }
+
+    @Test
+    public void testParallelCensusMatchesSerialCensus() throws IOException {
+        Grid grid = new Grid(256, 256, new TileEngine());
+        grid.initialize(0.35, 17);
+        grid.jump(2000);
+        Census serial = new Census();
+        serial.add(grid);
+        Census parallel = new Census(4);
+        parallel.add(grid);
+
+        assertEquals(serial.getCounts(), parallel.getCounts());
+        assertTrue(serial.getCount("xs4_33") > 0);
+        StringWriter out = new StringWriter();
+        parallel.writeTo(out);
+        assertTrue(out.toString().startsWith("apgcode,name,count\n"));
+        assertTrue(out.toString().contains("xs4_33,block," + serial.getCount("xs4_33") + "\n"));
+    }
+
+    private static void addObject(LongCellSet cells, int x0, int y0, String... rows) {
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                if (rows[y].charAt(x) == '*') {
+                    cells.add(x0 + x, y0 + y);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeSetTest {
+    @Test
+    public void testNeighborCountEngineChanges() {
+        assertChangesMatchGenerations(new NeighborCountEngine());
+    }
+
+    @Test
+    public void testTileEngineChanges() {
+        // Long enough for tiles to settle and be skipped
+        assertChangesMatchGenerations(new TileEngine());
+    }
+
+    @Test
+    public void testDefaultChanges() {
+        assertChangesMatchGenerations(new HashLifeEngine());
+    }
+
+    /**
+     *      .  .  .         .  *  .
+     *      *  *  *   ->    .  *  .
+     *      .  .  .         .  *  .
+     */
+    @Test
+    public void testGridNotifiesListeners() {
+        LongCellSet blinker = new LongCellSet();
+        blinker.add(0, 1);
+        blinker.add(1, 1);
+        blinker.add(2, 1);
+        Grid grid = new Grid(3, 3);
+        grid.initialize(blinker);
+        ChangeSet[] received = new ChangeSet[1];
+        grid.addChangeListener((changed, changes) -> received[0] = changes);
+
+        grid.evolve();
+
+        ChangeSet changes = received[0];
+        assertEquals(1, changes.getGeneration());
+        assertEquals(2, changes.getBirthCount());
+        assertEquals(2, changes.getDeathCount());
+        LongCellSet births = new LongCellSet();
+        changes.forEachBirth(births::add);
+        assertTrue(births.contains(1, 0));
+        assertTrue(births.contains(1, 2));
+        LongCellSet deaths = new LongCellSet();
+        changes.forEachDeath(deaths::add);
+        assertTrue(deaths.contains(0, 1));
+        assertTrue(deaths.contains(2, 1));
+    }
+
+    private static void assertChangesMatchGenerations(EvolutionEngine engine) {
+        Random random = new Random(3);
+        for (int x = -80; x < 80; x++) {
+            for (int y = -80; y < 80; y++) {
+                if (random.nextDouble() < 0.3) {
+                    engine.add(x, y);
+                }
+            }
+        }
+        LongCellSet expected = new LongCellSet();
+        engine.forEachLiveCell(expected::add);
+        ChangeSet changes = new ChangeSet();
+        for (int generation = 0; generation < 300; generation++) {
+            changes.clear();
+            engine.evolve(changes);
+            for (int i = 0; i < changes.getDeathCount(); i++) {
+                assertTrue(expected.remove(changes.getDeath(i)));
+            }
+            for (int i = 0; i < changes.getBirthCount(); i++) {
+                assertTrue(expected.add(changes.getBirth(i)));
+            }
+            assertEquals(engine.getPopulation(), expected.size());
+        }
+        assertEquals(engine.getLiveCells().asSet(), expected.asSet());
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CheckpointTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestoreSnapshot() throws IOException {
+        Path file = directory.resolve("grid.checkpoint");
+        Grid grid = new Grid(100, 100);
+        grid.initialize(0.3);
+        LongCellSet cells = new LongCellSet();
+        grid.forEachLiveCell(cells::add);
+        cells.add(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        grid.initialize(cells);
+        grid.jump(5);
+        try (CheckpointWriter writer = new CheckpointWriter(file)) {
+            writer.writeSnapshot(grid);
+        }
+
+        Grid restored = new Grid(100, 100);
+        CheckpointReader.restore(file, restored);
+        assertEquals(grid.getLiveCells(), restored.getLiveCells());
+        assertEquals(5, restored.getGeneration());
+    }
+
+    @Test
+    public void testRestoreDeltas() throws IOException {
+        Path file = directory.resolve("grid.checkpoint");
+        Grid grid = new Grid(100, 100);
+        grid.initialize(0.3);
+        try (CheckpointWriter writer = new CheckpointWriter(file)) {
+            writer.writeSnapshot(grid);
+            for (int i = 0; i < 10; i++) {
+                grid.jump(3);
+                writer.writeDelta(grid);
+            }
+        }
+
+        Grid restored = new Grid(100, 100);
+        CheckpointReader.restore(file, restored);
+        assertEquals(grid.getLiveCells(), restored.getLiveCells());
+        assertEquals(30, restored.getGeneration());
+
+        restored.evolve();
+        grid.evolve();
+        assertEquals(grid.getLiveCells(), restored.getLiveCells());
+    }
+
+    @Test
+    public void testIncompleteRecordIsIgnored() throws IOException {
+        Path file = directory.resolve("grid.checkpoint");
+        Grid grid = new Grid(50, 50);
+        grid.initialize(0.3);
+        Grid expected = new Grid(50, 50);
+        long size;
+        try (CheckpointWriter writer = new CheckpointWriter(file)) {
+            writer.writeSnapshot(grid);
+            grid.evolve();
+            writer.writeDelta(grid);
+            expected.initialize(grid.getLiveCells());
+            size = file.toFile().length();
+            grid.evolve();
+            writer.writeDelta(grid);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size + 12);
+        }
+
+        Grid restored = new Grid(50, 50);
+        CheckpointReader.restore(file, restored);
+        assertEquals(expected.getLiveCells(), restored.getLiveCells());
+        assertEquals(1, restored.getGeneration());
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CycleDetectorTest {
+    /**
+     * A T-tetromino, which takes a few generations to become a traffic light of period 2, and a blinker
+     */
+    @Test
+    public void testOscillatorIsDetectedOnce() {
+        LongCellSet cells = new LongCellSet();
+        cells.add(1, 1);
+        cells.add(0, 2);
+        cells.add(1, 2);
+        cells.add(2, 2);
+        cells.add(10, 10);
+        cells.add(11, 10);
+        cells.add(12, 10);
+        Grid grid = new Grid(16, 16);
+        grid.initialize(cells);
+        CycleDetector detector = new CycleDetector(8);
+        List<long[]> cycles = new ArrayList<>();
+        detector.setCycleListener((settled, firstGeneration, period) -> cycles.add(new long[] {firstGeneration, period}));
+        grid.setCycleDetector(detector);
+
+        long generations = grid.evolveUntilSettled(100);
+        assertEquals(generations, grid.getGeneration());
+        assertTrue(generations > 2);
+        assertTrue(detector.isSettled());
+        assertEquals(2, detector.getPeriod());
+        assertEquals(grid.getGeneration() - 2, detector.getFirstGeneration());
+        grid.evolve();
+        grid.evolve();
+        assertEquals(1, cycles.size());
+        assertEquals(2, cycles.get(0)[1]);
+    }
+
+    @Test
+    public void testStillLifeAndExtinction() {
+        Grid grid = new Grid(4, 4);
+        grid.setCycleDetector(new CycleDetector(4));
+        LongCellSet block = new LongCellSet();
+        block.add(0, 0);
+        block.add(0, 1);
+        block.add(1, 0);
+        block.add(1, 1);
+        grid.initialize(block);
+        assertEquals(1, grid.evolveUntilSettled(10));
+        assertEquals(1, grid.getCycleDetector().getPeriod());
+        assertEquals(0, grid.getCycleDetector().getFirstGeneration());
+
+        LongCellSet single = new LongCellSet();
+        single.add(2, 2);
+        grid.initialize(single);
+        assertFalse(grid.getCycleDetector().isSettled());
+        assertEquals(2, grid.evolveUntilSettled(10));
+        assertEquals(0, grid.getPopulation());
+    }
+
+    @Test
+    public void testGliderDoesNotSettle() {
+        LongCellSet glider = new LongCellSet();
+        glider.add(1, 0);
+        glider.add(2, 1);
+        glider.add(0, 2);
+        glider.add(1, 2);
+        glider.add(2, 2);
+        Grid grid = new Grid(10, 10, new TileEngine());
+        grid.initialize(glider);
+        grid.setCycleDetector(new CycleDetector(30));
+
+        assertEquals(500, grid.evolveUntilSettled(500));
+        assertFalse(grid.getCycleDetector().isSettled());
+    }
+
+    @Test
+    public void testHashFollowsChanges() {
+        Grid grid = new Grid(64, 64);
+        grid.initialize(0.3, 9);
+        grid.setCycleDetector(new CycleDetector(30));
+        for (int generation = 0; generation < 50; generation++) {
+            grid.evolve();
+        }
+        long hash = grid.getCycleDetector().getHash();
+
+        // Jumping rehashes the live cells from scratch
+        grid.jump(0);
+        assertEquals(hash, grid.getCycleDetector().getHash());
+        CycleDetector fresh = new CycleDetector(1);
+        grid.setCycleDetector(fresh);
+        assertEquals(hash, fresh.getHash());
+    }
+
+    @Test
+    public void testEvolveUntilSettledNeedsDetector() {
+        assertThrows(IllegalStateException.class, () -> new Grid(3, 3).evolveUntilSettled(1));
+        assertThrows(IllegalArgumentException.class, () -> new CycleDetector(0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DenseBoardEngineTest {
+    @Test
+    public void testEvolveMatchesCellByCellBoard() {
+        // Widths that do and do not fill the last word, with rules that do and do not give birth without neighbors
+        int[][] sizes = {{100, 37}, {128, 64}, {3, 70}};
+        for (Topology topology : new Topology[] {Topology.BOUNDED, Topology.TORUS}) {
+            for (int[] size : sizes) {
+                for (String rulestring : new String[] {"B3/S23", "B36/S23", "B0123478/S01234678"}) {
+                    assertMatchesCellByCellBoard(topology, size[0], size[1], Rule.parse(rulestring));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGliderWrapsAroundTorus() {
+        Grid grid = new Grid(70, 20, Topology.TORUS);
+        Set<Cell> glider = new HashSet<>();
+        glider.add(new Cell(1, 0));
+        glider.add(new Cell(2, 1));
+        glider.add(new Cell(0, 2));
+        glider.add(new Cell(1, 2));
+        glider.add(new Cell(2, 2));
+        grid.initialize(glider);
+
+        // The glider moves one cell diagonally every 4 generations, so it is back after 4 times 140, the least common
+        // multiple of the sizes
+        grid.jump(4 * 140);
+        assertEquals(glider, grid.getLiveCells());
+        assertEquals(Topology.TORUS, grid.getTopology());
+    }
+
+    @Test
+    public void testCellsBeyondBoundedEdgesAreDead() {
+        Grid grid = new Grid(4, 4, Topology.BOUNDED);
+        Set<Cell> cells = new HashSet<>();
+        // Only the first cell of a blinker that sticks out of the board is kept, and it dies on its own
+        cells.add(new Cell(3, 1));
+        cells.add(new Cell(4, 1));
+        cells.add(new Cell(5, 1));
+        grid.initialize(cells);
+        assertEquals(1, grid.getPopulation());
+
+        grid.evolve();
+        assertTrue(grid.getLiveCells().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new DenseBoardEngine(4, 4, Topology.INFINITE));
+    }
+
+    private static void assertMatchesCellByCellBoard(Topology topology, int columns, int rows, Rule rule) {
+        DenseBoardEngine engine = new DenseBoardEngine(columns, rows, topology, rule);
+        boolean[][] board = new boolean[columns][rows];
+        Random random = new Random(columns * 31 + rows);
+        for (int x = 0; x < columns; x++) {
+            for (int y = 0; y < rows; y++) {
+                if (random.nextDouble() < 0.35) {
+                    board[x][y] = true;
+                    engine.add(x, y);
+                }
+            }
+        }
+
+        ChangeSet changes = new ChangeSet();
+        for (int generation = 0; generation < 40; generation++) {
+            boolean[][] next = new boolean[columns][rows];
+            int births = 0;
+            int deaths = 0;
+            for (int x = 0; x < columns; x++) {
+                for (int y = 0; y < rows; y++) {
+                    int neighbors = 0;
+                    for (int dx = -1; dx < 2; dx++) {
+                        for (int dy = -1; dy < 2; dy++) {
+                            if ((dx != 0 || dy != 0) && isAlive(board, topology, x + dx, y + dy)) {
+                                neighbors++;
+                            }
+                        }
+                    }
+                    next[x][y] = rule.isAliveInNextGeneration(board[x][y], neighbors);
+                    births += next[x][y] && !board[x][y] ? 1 : 0;
+                    deaths += board[x][y] && !next[x][y] ? 1 : 0;
+                }
+            }
+            board = next;
+            changes.clear();
+            engine.evolve(changes);
+            assertEquals(births, changes.getBirthCount(), topology + " " + rule + " generation " + generation);
+            assertEquals(deaths, changes.getDeathCount(), topology + " " + rule + " generation " + generation);
+        }
+
+        Set<Cell> expected = new HashSet<>();
+        for (int x = 0; x < columns; x++) {
+            for (int y = 0; y < rows; y++) {
+                if (board[x][y]) {
+                    expected.add(new Cell(x, y));
+                }
+            }
+        }
+        assertEquals(expected, engine.getLiveCells().asSet(), topology + " " + columns + "x" + rows + " " + rule);
+        assertEquals(expected.size(), engine.getPopulation());
+    }
+
+    private static boolean isAlive(boolean[][] board, Topology topology, int x, int y) {
+        int columns = board.length;
+        int rows = board[0].length;
+        if (topology == Topology.TORUS) {
+            return board[Math.floorMod(x, columns)][Math.floorMod(y, rows)];
+        }
+        return x >= 0 && x < columns && y >= 0 && y < rows && board[x][y];
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EnsembleRunnerTest {
+    @Test
+    public void testResultsDoNotDependOnEngineOrThreads() {
+        EnsembleRunner.Result single = new EnsembleRunner(EngineType.NEIGHBOR_COUNT, 16, 0.4, 1000).run(1, 20, 1);
+        EnsembleRunner.Result parallel = new EnsembleRunner(EngineType.TILE, 16, 0.4, 1000).run(1, 20, 4);
+
+        assertEquals(20, parallel.getSoupCount());
+        for (int i = 0; i < single.getSoupCount(); i++) {
+            EnsembleRunner.SoupResult expected = single.getSoup(i);
+            EnsembleRunner.SoupResult actual = parallel.getSoup(i);
+            assertEquals(1 + i, actual.getSeed());
+            assertEquals(expected.getLifespan(), actual.getLifespan());
+            assertEquals(expected.getPeriod(), actual.getPeriod());
+            assertEquals(expected.getInitialPopulation(), actual.getInitialPopulation());
+            assertEquals(expected.getFinalPopulation(), actual.getFinalPopulation());
+        }
+    }
+
+    @Test
+    public void testSettledSoupRepeats() {
+        EnsembleRunner.Result result = new EnsembleRunner(EngineType.NEIGHBOR_COUNT, 16, 0.4, 2000).run(1, 20, 2);
+        int settledSoups = 0;
+        for (int i = 0; i < result.getSoupCount(); i++) {
+            EnsembleRunner.SoupResult soup = result.getSoup(i);
+            if (!soup.isSettled() || soup.getEscapedGliders() > 0) {
+                continue;
+            }
+            settledSoups++;
+            Grid grid = new Grid(16, 16);
+            grid.initialize(0.4, soup.getSeed());
+            grid.jump(soup.getLifespan());
+            Set<Cell> settled = new HashSet<>(grid.getLiveCells());
+            for (int generation = 1; generation < soup.getPeriod(); generation++) {
+                grid.evolve();
+                assertNotEquals(settled, grid.getLiveCells());
+            }
+            grid.evolve();
+            assertEquals(settled, grid.getLiveCells());
+            assertEquals(soup.getFinalPopulation(), grid.getPopulation());
+        }
+        assertTrue(settledSoups > 0);
+    }
+
+    @Test
+    public void testSoupShootingGlidersSettles() {
+        EnsembleRunner.Result result = new EnsembleRunner(EngineType.NEIGHBOR_COUNT, 16, 0.4, 5000).run(1, 20, 2);
+        int glidingSoups = 0;
+        for (int i = 0; i < result.getSoupCount(); i++) {
+            EnsembleRunner.SoupResult soup = result.getSoup(i);
+            assertTrue(soup.isSettled());
+            if (soup.getEscapedGliders() == 0) {
+                continue;
+            }
+            glidingSoups++;
+            assertTrue(soup.getLifespan() < 5000);
+            // From its lifespan on the soup repeats apart from the gliders, which keep five cells each
+            Grid grid = new Grid(16, 16);
+            grid.initialize(0.4, soup.getSeed());
+            grid.jump(soup.getLifespan());
+            long population = grid.getPopulation();
+            assertEquals(soup.getFinalPopulation() + 5 * soup.getEscapedGliders(), population);
+            for (int generation = 0; generation < 4 * soup.getPeriod(); generation++) {
+                grid.evolve();
+            }
+            assertEquals(population, grid.getPopulation());
+            Census census = new Census();
+            census.add(grid);
+            assertTrue(census.getCount("xq4_153") >= soup.getEscapedGliders());
+        }
+        assertTrue(glidingSoups > 0);
+    }
+
+    @Test
+    public void testSummary() throws IOException {
+        EnsembleRunner.Result result = new EnsembleRunner(EngineType.NEIGHBOR_COUNT, 8, 0.5, 1000).run(7, 30, 3);
+        StringWriter out = new StringWriter();
+        result.writeSummary(out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("outcome,soups,mean_lifespan,max_lifespan,mean_final_population", lines[0]);
+        int soups = 0;
+        for (int i = 1; i < lines.length; i++) {
+            soups += Integer.parseInt(lines[i].split(",")[1]);
+        }
+        assertEquals(30, soups);
+    }
+}
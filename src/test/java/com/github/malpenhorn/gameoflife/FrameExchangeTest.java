@@ -0,0 +1,83 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class FrameExchangeTest {
+    @Test
+    public void testLatestFrameWins() {
+        FrameExchange frames = new FrameExchange();
+        Frame first = frames.obtain();
+        frames.publish(first);
+        Frame second = frames.obtain();
+        frames.publish(second);
+
+        assertSame(second, frames.take());
+        assertNull(frames.take());
+        // The dropped frame is reused as the next back buffer
+        assertSame(first, frames.obtain());
+    }
+
+    @Test
+    public void testRenderedFrameIsReused() {
+        FrameExchange frames = new FrameExchange();
+        Frame frame = frames.obtain();
+        frames.publish(frame);
+        frames.release(frames.take());
+
+        assertSame(frame, frames.obtain());
+    }
+
+    /**
+     * Captures the 3 x 3 region around the origin
+     *  .O.      .O.
+     *  .O.  ->  .O.
+     *  .O.      .O.
+     */
+    @Test
+    public void testCaptureVisibleRegion() {
+        Grid grid = new Grid(3, 3);
+        LongCellSet cells = new LongCellSet();
+        cells.add(0, -1);
+        cells.add(0, 0);
+        cells.add(0, 1);
+        cells.add(5, 5);
+        grid.initialize(cells);
+
+        Frame frame = new Frame();
+        frame.capture(grid, new Viewport(0.5, 0.5, 0, 3, 3));
+
+        // One more column and row for the partially visible blocks
+        assertEquals(4, frame.getColumns());
+        long visible = 0;
+        for (int row = 0; row < frame.getRows(); row++) {
+            for (int column = 0; column < frame.getColumns(); column++) {
+                visible += frame.getBlockPopulation(column, row);
+            }
+        }
+        assertEquals(3, visible);
+        assertEquals(1, frame.getBlockPopulation(1, 0));
+        assertEquals(1, frame.getBlockPopulation(1, 1));
+        assertEquals(1, frame.getBlockPopulation(1, 2));
+        assertEquals(4, frame.getPopulation());
+    }
+
+    @Test
+    public void testCaptureZoomedOut() {
+        Grid grid = new Grid(3, 3);
+        grid.initialize(0.5);
+
+        Frame frame = new Frame();
+        frame.capture(grid, new Viewport(0, 0, 4, 10, 10));
+        long visible = 0;
+        for (int row = 0; row < frame.getRows(); row++) {
+            for (int column = 0; column < frame.getColumns(); column++) {
+                visible += frame.getBlockPopulation(column, row);
+            }
+        }
+        assertEquals(grid.getPopulation(), visible);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GridTest {
@@ -49,6 +50,9 @@ public class GridTest {
         grid.initialize(seed);
 
         assertEquals(4, grid.getLiveCells().size());
+        assertThrows(UnsupportedOperationException.class, () -> grid.getLiveCells().add(new Cell(1, 1)));
+        assertThrows(UnsupportedOperationException.class, () -> grid.getLiveCells().remove(new Cell(0, 0)));
+        assertEquals(4, grid.getLiveCells().size());
     }
 
     @Test
@@ -201,4 +205,77 @@ public class GridTest {
         assertEquals(1, liveCells.size());
         assertTrue(liveCells.contains(new Cell(1,1)));
     }
+
+    /**
+     *      .  .  .         .  *  .         .  .  .
+     *      *  *  *   ->    .  *  .   ->    *  *  *
+     *      .  .  .         .  *  .         .  .  .
+     */
+    @Test
+    public void testBlinkerOscillates() {
+        Set<Cell> seed = new HashSet<>();
+        seed.add(new Cell(0, 1));
+        seed.add(new Cell(1, 1));
+        seed.add(new Cell(2, 1));
+
+        Grid grid = new Grid(GRID_COLUMNS, GRID_ROWS);
+        grid.initialize(seed);
+        grid.evolve();
+
+        Set<Cell> liveCells = grid.getLiveCells();
+        assertEquals(3, liveCells.size());
+        assertTrue(liveCells.contains(new Cell(1,0)));
+        assertTrue(liveCells.contains(new Cell(1,1)));
+        assertTrue(liveCells.contains(new Cell(1,2)));
+
+        grid.evolve();
+
+        liveCells = grid.getLiveCells();
+        assertEquals(3, liveCells.size());
+        assertTrue(liveCells.contains(new Cell(0,1)));
+        assertTrue(liveCells.contains(new Cell(1,1)));
+        assertTrue(liveCells.contains(new Cell(2,1)));
+    }
+
+    @Test
+    public void testForEachLiveCellInFollowsEvolution() {
+        Grid grid = new Grid(200, 200);
+        grid.initialize(0.3);
+        grid.jump(100);
+
+        Set<Cell> expected = new HashSet<>();
+        for (Cell cell : grid.getLiveCells()) {
+            if (cell.getX() >= 30 && cell.getX() < 130 && cell.getY() >= -20 && cell.getY() < 80) {
+                expected.add(cell);
+            }
+        }
+        Set<Cell> region = new HashSet<>();
+        grid.forEachLiveCellIn(30, -20, 130, 80, (x, y) -> region.add(new Cell(x, y)));
+
+        assertEquals(expected, region);
+    }
+
+    @Test
+    public void testSeededSoupIsTheSameOnAnyEngineAndThreads() {
+        // Neither the width nor the height is a multiple of the 64 cells of a word or band
+        Grid serial = new Grid(300, 200);
+        serial.initialize(0.3, 42, 1);
+        Grid parallel = new Grid(300, 200, new TileEngine());
+        parallel.initialize(0.3, 42, 4);
+        Grid board = new Grid(300, 200, Topology.BOUNDED);
+        board.initialize(0.3, 42, 3);
+
+        Set<Cell> expected = serial.getLiveCells();
+        assertEquals(expected, parallel.getLiveCells());
+        assertEquals(expected, board.getLiveCells());
+        assertEquals(expected.size(), board.getPopulation());
+        assertEquals(0.3 * 300 * 200, expected.size(), 0.02 * 300 * 200);
+        for (Cell cell : expected) {
+            assertTrue(cell.getX() >= 0 && cell.getX() < 300 && cell.getY() >= 0 && cell.getY() < 200);
+        }
+
+        Grid otherSeed = new Grid(300, 200);
+        otherSeed.initialize(0.3, 43, 1);
+        assertTrue(!expected.equals(otherSeed.getLiveCells()));
+    }
 }
@@ -0,0 +1,126 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashLifeEngineTest {
+    @Test
+    public void testEvolveMatchesNeighborCountEngine() {
+        EvolutionEngine expected = new NeighborCountEngine();
+        EvolutionEngine actual = new HashLifeEngine();
+        Random random = new Random(42);
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                if (random.nextDouble() < 0.3) {
+                    expected.add(x, y);
+                    actual.add(x, y);
+                }
+            }
+        }
+
+        for (int generation = 0; generation < 100; generation++) {
+            expected.evolve();
+            actual.evolve();
+            assertEquals(expected.getLiveCells().asSet(), actual.getLiveCells().asSet());
+        }
+    }
+
+    @Test
+    public void testAdvanceMatchesSingleSteps() {
+        EvolutionEngine expected = new NeighborCountEngine();
+        EvolutionEngine actual = new HashLifeEngine();
+        addRPentomino(expected, 0, 0);
+        addRPentomino(actual, 0, 0);
+
+        expected.advance(1103);
+        actual.advance(1103);
+
+        assertEquals(116, actual.getPopulation());
+        assertEquals(expected.getLiveCells().asSet(), actual.getLiveCells().asSet());
+    }
+
+    /**
+     * A glider moves one cell diagonally every four generations
+     */
+    @Test
+    public void testGridJumpMovesGliderFarAway() {
+        Grid grid = new Grid(10, 10, new HashLifeEngine());
+        grid.getEngine().add(1, 0);
+        grid.getEngine().add(2, 1);
+        grid.getEngine().add(0, 2);
+        grid.getEngine().add(1, 2);
+        grid.getEngine().add(2, 2);
+
+        grid.jump(1L << 30);
+
+        assertEquals(1L << 30, grid.getGeneration());
+        assertEquals(5, grid.getPopulation());
+        int offset = 1 << 28;
+        LongCellSet visible = new LongCellSet();
+        grid.forEachLiveCellIn(offset, offset, offset + 3, offset + 3, visible::add);
+        assertEquals(5, visible.size());
+        assertTrue(visible.contains(offset + 1, offset));
+        assertTrue(visible.contains(offset + 2, offset + 2));
+    }
+
+    @Test
+    public void testGarbageCollectionKeepsTheUniverse() {
+        HashLifeEngine engine = new HashLifeEngine(1000);
+        EvolutionEngine expected = new NeighborCountEngine();
+        addRPentomino(engine, 10, 10);
+        addRPentomino(expected, 10, 10);
+
+        engine.advance(500);
+        expected.advance(500);
+
+        assertTrue(engine.getNodeCount() < 10000);
+        assertEquals(expected.getLiveCells().asSet(), engine.getLiveCells().asSet());
+    }
+
+    @Test
+    public void testForEachBlockInMatchesCellCounts() {
+        HashLifeEngine engine = new HashLifeEngine();
+        Random random = new Random(5);
+        for (int x = -50; x < 50; x++) {
+            for (int y = -50; y < 50; y++) {
+                if (random.nextDouble() < 0.3) {
+                    engine.add(x, y);
+                }
+            }
+        }
+        engine.advance(64);
+
+        for (int shift : new int[] {0, 2, 4, 7}) {
+            assertEquals(countCells(engine, -256, -256, 256, 256, shift), blocksOf(engine, -256, -256, 256, 256, shift));
+            assertEquals(countCells(engine, -33, -7, 61, 90, shift), blocksOf(engine, -33, -7, 61, 90, shift));
+        }
+    }
+
+    private static void addRPentomino(EvolutionEngine engine, int x, int y) {
+        engine.add(x + 1, y);
+        engine.add(x + 2, y);
+        engine.add(x, y + 1);
+        engine.add(x + 1, y + 1);
+        engine.add(x + 1, y + 2);
+    }
+
+    private static Map<Long, Long> blocksOf(EvolutionEngine engine, int x0, int y0, int x1, int y1, int shift) {
+        Map<Long, Long> blocks = new HashMap<>();
+        engine.forEachBlockIn(x0, y0, x1, y1, shift,
+                (blockX, blockY, population) -> blocks.merge(Cell.pack(blockX, blockY), population, Long::sum));
+        return blocks;
+    }
+
+    private static Map<Long, Long> countCells(EvolutionEngine engine, int x0, int y0, int x1, int y1, int shift) {
+        Map<Long, Long> blocks = new HashMap<>();
+        engine.forEachLiveCellIn(x0, y0, x1, y1,
+                (x, y) -> blocks.merge(Cell.pack(x >> shift, y >> shift), 1L, Long::sum));
+        return blocks;
+    }
+}
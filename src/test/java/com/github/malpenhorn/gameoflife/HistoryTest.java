@@ -0,0 +1,97 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistoryTest {
+    @Test
+    public void testSeekReproducesEveryGeneration() {
+        Grid grid = new Grid(64, 64);
+        grid.initialize(0.3, 7);
+        History history = new History(1 << 20, 16);
+        history.attach(grid);
+        List<Set<Cell>> generations = new ArrayList<>();
+        generations.add(new HashSet<>(grid.getLiveCells()));
+        for (int i = 0; i < 100; i++) {
+            grid.evolve();
+            generations.add(new HashSet<>(grid.getLiveCells()));
+        }
+        assertEquals(0, history.getOldestGeneration());
+        assertEquals(100, history.getNewestGeneration());
+        assertTrue(history.getKeyframeCount() >= 100 / 16);
+
+        for (int generation : new int[] {57, 0, 100, 16, 15, 99}) {
+            history.seek(grid, generation);
+            assertEquals(generation, grid.getGeneration());
+            assertEquals(generations.get(generation), grid.getLiveCells());
+        }
+        assertThrows(IllegalArgumentException.class, () -> history.seek(grid, 101));
+    }
+
+    @Test
+    public void testOldestGenerationsAreEvicted() {
+        Grid grid = new Grid(64, 64);
+        grid.initialize(0.3, 11);
+        History history = new History(4096, 8);
+        history.attach(grid);
+        for (int i = 0; i < 200; i++) {
+            grid.evolve();
+            assertTrue(history.getBytes() <= 4096 || history.getKeyframeCount() == 1);
+        }
+        assertTrue(history.getOldestGeneration() > 0);
+        assertEquals(200, history.getNewestGeneration());
+
+        Set<Cell> newest = new HashSet<>(grid.getLiveCells());
+        history.seek(grid, history.getOldestGeneration());
+        history.seek(grid, 200);
+        assertEquals(newest, grid.getLiveCells());
+        assertThrows(IllegalArgumentException.class, () -> history.seek(grid, 0));
+    }
+
+    @Test
+    public void testEvolvingAfterSeekReplacesLaterGenerations() {
+        Grid grid = new Grid(32, 32);
+        grid.initialize(0.4, 3);
+        History history = new History(1 << 20, 4);
+        history.attach(grid);
+        for (int i = 0; i < 20; i++) {
+            grid.evolve();
+        }
+        history.seek(grid, 10);
+        LongCellSet cells = new LongCellSet();
+        grid.getLiveCellSet().forEachPacked(cells::add);
+        cells.add(31, 31);
+        cells.add(30, 31);
+        cells.add(31, 30);
+        grid.initialize(cells);
+        history.attach(grid);
+        assertEquals(10, grid.getGeneration());
+        grid.evolve();
+        assertEquals(10, history.getOldestGeneration());
+        assertEquals(11, history.getNewestGeneration());
+
+        Set<Cell> eleventh = new HashSet<>(grid.getLiveCells());
+        grid.evolve();
+        grid.evolve();
+        history.seek(grid, 11);
+        grid.evolve();
+        assertEquals(12, history.getNewestGeneration());
+        history.seek(grid, 11);
+        assertEquals(eleventh, grid.getLiveCells());
+
+        // A jump is not reported, so the history starts over from the generation after it
+        grid.jump(5);
+        grid.evolve();
+        assertEquals(17, history.getOldestGeneration());
+        assertEquals(17, history.getNewestGeneration());
+        assertEquals(1, history.getKeyframeCount());
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongCellSetTest {
+    @Test
+    public void testAddAndContains() {
+        LongCellSet cells = new LongCellSet();
+        assertTrue(cells.add(1, 2));
+        assertFalse(cells.add(1, 2));
+        assertTrue(cells.add(-1, -2));
+
+        assertEquals(2, cells.size());
+        assertTrue(cells.contains(1, 2));
+        assertTrue(cells.contains(-1, -2));
+        assertFalse(cells.contains(2, 1));
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        LongCellSet cells = new LongCellSet();
+        cells.add(Integer.MIN_VALUE, 0);
+        cells.add(Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+        assertEquals(2, cells.size());
+        assertTrue(cells.contains(Integer.MIN_VALUE, 0));
+        assertTrue(cells.contains(Integer.MAX_VALUE, Integer.MIN_VALUE));
+        assertTrue(cells.remove(Integer.MIN_VALUE, 0));
+        assertFalse(cells.contains(Integer.MIN_VALUE, 0));
+        assertEquals(1, cells.size());
+    }
+
+    @Test
+    public void testGrowAndRemove() {
+        LongCellSet cells = new LongCellSet();
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 100; y++) {
+                cells.add(x, y);
+            }
+        }
+        assertEquals(10000, cells.size());
+
+        for (int x = 0; x < 100; x += 2) {
+            for (int y = 0; y < 100; y++) {
+                assertTrue(cells.remove(x, y));
+            }
+        }
+        assertEquals(5000, cells.size());
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 100; y++) {
+                assertEquals(x % 2 == 1, cells.contains(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testForEachVisitsEveryCellOnce() {
+        LongCellSet cells = new LongCellSet();
+        cells.add(0, 0);
+        cells.add(3, -4);
+        cells.add(Integer.MIN_VALUE, 0);
+
+        Set<Cell> visited = new HashSet<>();
+        cells.forEach((x, y) -> assertTrue(visited.add(new Cell(x, y))));
+
+        assertEquals(3, visited.size());
+        assertTrue(visited.contains(new Cell(3, -4)));
+        assertTrue(visited.contains(new Cell(Integer.MIN_VALUE, 0)));
+    }
+
+    @Test
+    public void testSetView() {
+        LongCellSet cells = new LongCellSet();
+        Set<Cell> view = cells.asSet();
+        view.add(new Cell(5, 6));
+        cells.add(7, 8);
+
+        assertEquals(2, view.size());
+        assertTrue(view.contains(new Cell(5, 6)));
+        assertTrue(view.contains(new Cell(7, 8)));
+        assertEquals(new HashSet<>(view), view);
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapBoardEngineTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEvolveMatchesDenseBoardEngine() throws IOException {
+        for (Topology topology : new Topology[] {Topology.BOUNDED, Topology.TORUS}) {
+            for (Rule rule : new Rule[] {Rule.CONWAY, Rule.HIGHLIFE}) {
+                // Chunks of 7 rows, so that the neighborhoods of some rows span two chunks
+                assertMatchesDenseBoardEngine(new OffHeapBoardEngine(100, 45, topology, rule, null, 7 * 2 * 8),
+                        topology, rule);
+                assertMatchesDenseBoardEngine(new OffHeapBoardEngine(100, 45, topology, rule,
+                        directory.resolve(topology.getName() + rule.getBirthMask()), 7 * 2 * 8), topology, rule);
+            }
+        }
+    }
+
+    @Test
+    public void testBoardIsMappedIntoFile() throws IOException {
+        Path file = directory.resolve("board");
+        OffHeapBoardEngine engine = new OffHeapBoardEngine(128, 100, Topology.TORUS, Rule.CONWAY, file);
+        // Both generations of 2 words for each of the 100 rows
+        assertEquals(2 * 100 * 2 * 8, Files.size(file));
+
+        engine.add(1, 0);
+        engine.add(2, 1);
+        engine.add(0, 2);
+        engine.add(1, 2);
+        engine.add(2, 2);
+        engine.evolve();
+        assertEquals(5, engine.getPopulation());
+        engine.clear();
+        assertEquals(0, engine.getPopulation());
+        assertTrue(engine.getLiveCells().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapBoardEngine(10, 10, Topology.INFINITE, Rule.CONWAY));
+    }
+
+    @Test
+    public void testCloseWritesBoardToFile() throws IOException {
+        Path file = directory.resolve("blinker");
+        try (OffHeapBoardEngine engine = new OffHeapBoardEngine(64, 3, Topology.BOUNDED, Rule.CONWAY, file)) {
+            engine.add(0, 1);
+            engine.add(1, 1);
+            engine.add(2, 1);
+            engine.evolve();
+        }
+
+        // The vertical phase of the blinker is the second generation, the words after the first one
+        LongBuffer words = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.nativeOrder()).asLongBuffer();
+        assertEquals(6, words.capacity());
+        assertEquals(0, words.get(0) | words.get(2));
+        assertEquals(0b111, words.get(1));
+        assertEquals(0b10, words.get(3));
+        assertEquals(0b10, words.get(4));
+        assertEquals(0b10, words.get(5));
+    }
+
+    private static void assertMatchesDenseBoardEngine(OffHeapBoardEngine actual, Topology topology, Rule rule) {
+        DenseBoardEngine expected = new DenseBoardEngine(100, 45, topology, rule);
+        Random random = new Random(3);
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 45; y++) {
+                if (random.nextDouble() < 0.3) {
+                    expected.add(x, y);
+                    actual.add(x, y);
+                }
+            }
+        }
+
+        ChangeSet expectedChanges = new ChangeSet();
+        ChangeSet actualChanges = new ChangeSet();
+        for (int generation = 0; generation < 60; generation++) {
+            expectedChanges.clear();
+            actualChanges.clear();
+            expected.evolve(expectedChanges);
+            actual.evolve(actualChanges);
+            assertEquals(expected.getPopulation(), actual.getPopulation());
+            assertEquals(expectedChanges.getBirthCount(), actualChanges.getBirthCount());
+            assertEquals(expectedChanges.getDeathCount(), actualChanges.getDeathCount());
+        }
+        assertEquals(expected.getLiveCells().asSet(), actual.getLiveCells().asSet());
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PatternReaderTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * .O.
+     * ..O
+     * OOO
+     */
+    @Test
+    public void testReadRleGlider() throws IOException {
+        Path file = write("glider.rle", "#N Glider\r\n#C A comment\r\nx = 3, y = 3, rule = B3/S23\r\nbob$2bo$3o!\r\n");
+
+        assertGlider(read(file), 0, 0);
+    }
+
+    @Test
+    public void testReadPlaintextGlider() throws IOException {
+        Path file = write("glider.cells", "!Name: Glider\n!\n.O.\n..O\nOOO\n");
+
+        assertGlider(read(file), 0, 0);
+    }
+
+    @Test
+    public void testReadMacrocellGlider() throws IOException {
+        Path file = write("glider.mc", "[M2] (golly 2.0)\n#R B3/S23\n.*$..*$***$\n4 1 0 0 0\n");
+
+        assertGlider(read(file), -8, -8);
+    }
+
+    @Test
+    public void testInitializeGridFromFile() throws IOException {
+        Path file = write("blinker.rle", "x = 3, y = 1\n3o!");
+        Grid grid = new Grid(10, 10);
+        grid.initialize(file);
+
+        assertEquals(3, grid.getPopulation());
+        grid.evolve();
+        assertTrue(grid.getLiveCellSet().contains(1, -1));
+        assertTrue(grid.getLiveCellSet().contains(1, 1));
+    }
+
+    private void assertGlider(LongCellSet cells, int x, int y) {
+        assertEquals(5, cells.size());
+        assertTrue(cells.contains(x + 1, y));
+        assertTrue(cells.contains(x + 2, y + 1));
+        assertTrue(cells.contains(x, y + 2));
+        assertTrue(cells.contains(x + 1, y + 2));
+        assertTrue(cells.contains(x + 2, y + 2));
+    }
+
+    private LongCellSet read(Path file) throws IOException {
+        LongCellSet cells = new LongCellSet();
+        PatternReader.read(file, cells::add);
+        return cells;
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleTest {
+    @Test
+    public void testParse() {
+        Rule highLife = Rule.parse("b36/s23");
+        assertEquals(Rule.HIGHLIFE, highLife);
+        assertEquals("B36/S23", highLife.toString());
+        assertEquals(Rule.CONWAY, Rule.parse("S23/B3"));
+        assertEquals(Rule.CONWAY, Rule.parse("B3S23"));
+        assertEquals("B2/S", Rule.SEEDS.toString());
+        assertTrue(highLife.isAliveInNextGeneration(false, 6));
+        assertFalse(highLife.isAliveInNextGeneration(true, 6));
+        assertEquals(1 << 3 | 1 << 6, highLife.getBirthMask());
+
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("B39/S23"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("B3/B3"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("B3"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("23/3"));
+    }
+
+    @Test
+    public void testBirthWithoutNeighborsIsRejected() {
+        Rule rule = Rule.parse("B0/S8");
+        assertThrows(IllegalArgumentException.class, () -> new NeighborCountEngine(rule));
+        assertThrows(IllegalArgumentException.class, () -> new TileEngine(rule, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HashLifeEngine(rule));
+    }
+
+    @Test
+    public void testEnginesAgreeOnOtherRules() {
+        for (String rulestring : new String[] {"B36/S23", "B3678/S34678", "B2/S", "B3/S012345678"}) {
+            Rule rule = Rule.parse(rulestring);
+            EvolutionEngine[] engines = {new NeighborCountEngine(rule), new TileEngine(rule, 1), new HashLifeEngine(rule)};
+            Random random = new Random(13);
+            for (int x = -70; x < 70; x++) {
+                for (int y = -70; y < 70; y++) {
+                    if (random.nextDouble() < 0.3) {
+                        for (EvolutionEngine engine : engines) {
+                            engine.add(x, y);
+                        }
+                    }
+                }
+            }
+
+            for (int generation = 0; generation < 60; generation++) {
+                for (EvolutionEngine engine : engines) {
+                    engine.evolve();
+                }
+            }
+            assertEquals(rule, engines[1].getRule());
+            assertEquals(engines[0].getLiveCells().asSet(), engines[1].getLiveCells().asSet(), rulestring);
+            assertEquals(engines[0].getLiveCells().asSet(), engines[2].getLiveCells().asSet(), rulestring);
+        }
+    }
+
+    /**
+     * The HighLife replicator copies itself, which it does not under Conway's rule
+     */
+    @Test
+    public void testHighLifeReplicator() {
+        Grid grid = new Grid(10, 10, new NeighborCountEngine(Rule.HIGHLIFE));
+        LongCellSet replicator = new LongCellSet();
+        int[][] cells = {{2, 0}, {3, 0}, {4, 0}, {1, 1}, {4, 1}, {0, 2}, {4, 2}, {0, 3}, {3, 3}, {0, 4}, {1, 4}, {2, 4}};
+        for (int[] cell : cells) {
+            replicator.add(cell[0], cell[1]);
+        }
+        grid.initialize(replicator);
+        grid.jump(12);
+
+        assertEquals(24, grid.getPopulation());
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimulationMetricsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testHistogramPercentiles() {
+        for (long nanos = 0; nanos < 100000; nanos = nanos * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(LatencyHistogram.lowerBoundOf(bucket) <= nanos && nanos <= LatencyHistogram.upperBoundOf(bucket));
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        // Every percentile is the upper end of a bucket at most an eighth of its value wide
+        assertEquals(500000, histogram.percentile(0.5), 500000 / 8.0);
+        assertEquals(990000, histogram.percentile(0.99), 990000 / 8.0);
+        assertTrue(histogram.percentile(1) >= 1000000);
+        assertEquals(0, new LatencyHistogram().percentile(0.5));
+    }
+
+    @Test
+    public void testGridRecordsGenerations() throws JMException {
+        Grid grid = new Grid(10, 10);
+        Set<Cell> blinker = new HashSet<>();
+        blinker.add(new Cell(1, 0));
+        blinker.add(new Cell(1, 1));
+        blinker.add(new Cell(1, 2));
+        grid.initialize(blinker);
+        SimulationMetrics metrics = new SimulationMetrics();
+        grid.setMetrics(metrics);
+
+        grid.evolve();
+        assertEquals(1, metrics.getGenerations());
+        // The grid evolves with a change set of its own, so the births and deaths are known without listeners
+        assertEquals(2, metrics.getBirths());
+        assertEquals(2, metrics.getDeaths());
+
+        grid.addChangeListener((changed, changes) -> { });
+        for (int generation = 0; generation < 4; generation++) {
+            grid.evolve();
+        }
+        grid.jump(10);
+        assertEquals(5, metrics.getGenerations());
+        assertEquals(15, metrics.getCellsProcessed());
+        assertEquals(10, metrics.getBirths());
+        assertEquals(10, metrics.getDeaths());
+        assertTrue(metrics.getEvolveMaxMicros() >= metrics.getEvolveP50Micros());
+        assertTrue(metrics.getEvolveMeanMicros() > 0);
+
+        ObjectName name = metrics.registerMBean("test");
+        try {
+            assertEquals(5L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Generations"));
+        } finally {
+            metrics.unregisterMBean("test");
+        }
+        metrics.reset();
+        assertEquals(0, metrics.getGenerations());
+    }
+
+    @Test
+    public void testLogRollsOver() throws IOException {
+        Path file = directory.resolve("metrics.csv");
+        Grid grid = new Grid(64, 64, Topology.TORUS);
+        grid.initialize(0.3, 5);
+        SimulationMetrics metrics = new SimulationMetrics();
+        grid.setMetrics(metrics);
+        try (MetricsLog log = new MetricsLog(file, 400)) {
+            metrics.setLog(log, 2);
+            for (int generation = 0; generation < 10; generation++) {
+                grid.evolve();
+            }
+            metrics.recordFrame(1000);
+            metrics.recordDroppedFrame();
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        List<String> rolledOver = Files.readAllLines(Paths.get(file + ".1"), StandardCharsets.US_ASCII);
+        assertTrue(lines.get(0).startsWith("timestamp_ms,generations,"));
+        assertTrue(rolledOver.get(0).startsWith("timestamp_ms,generations,"));
+        // Five lines were written, the ones before the last roll over are in the .1 file
+        assertTrue(lines.size() - 1 + rolledOver.size() - 1 <= 5);
+        for (String line : lines.subList(1, lines.size())) {
+            assertEquals("2", line.split(",")[1]);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TileEngineTest {
+    @Test
+    public void testEvolveMatchesNeighborCountEngine() {
+        EvolutionEngine expected = new NeighborCountEngine();
+        TileEngine actual = new TileEngine();
+        Random random = new Random(7);
+        // The soup straddles tile borders, including those around the origin
+        for (int x = -100; x < 100; x++) {
+            for (int y = -70; y < 90; y++) {
+                if (random.nextDouble() < 0.25) {
+                    expected.add(x, y);
+                    actual.add(x, y);
+                }
+            }
+        }
+
+        // Long enough for most of the soup to settle, so that tiles are being skipped
+        for (int generation = 0; generation < 600; generation++) {
+            expected.evolve();
+            actual.evolve();
+            assertEquals(expected.getPopulation(), actual.getPopulation());
+        }
+        assertEquals(expected.getLiveCells().asSet(), actual.getLiveCells().asSet());
+    }
+
+    @Test
+    public void testParallelEvolveMatchesSerialEvolve() {
+        TileEngine expected = new TileEngine();
+        TileEngine actual = new TileEngine(4);
+        Random random = new Random(11);
+        for (int x = 0; x < 640; x++) {
+            for (int y = 0; y < 640; y++) {
+                if (random.nextDouble() < 0.25) {
+                    expected.add(x, y);
+                    actual.add(x, y);
+                }
+            }
+        }
+
+        for (int generation = 0; generation < 50; generation++) {
+            expected.evolve();
+            actual.evolve();
+        }
+        assertEquals(expected.getLiveCells().asSet(), actual.getLiveCells().asSet());
+    }
+
+    @Test
+    public void testClearedEngineReusesTiles() {
+        TileEngine reused = new TileEngine();
+        for (long seed = 1; seed <= 3; seed++) {
+            TileEngine fresh = new TileEngine();
+            reused.clear();
+            Random random = new Random(seed);
+            // Each soup lies elsewhere, so spare tiles move to new positions
+            int offset = (int) seed * 100;
+            for (int x = offset; x < offset + 150; x++) {
+                for (int y = -offset; y < -offset + 150; y++) {
+                    if (random.nextDouble() < 0.3) {
+                        fresh.add(x, y);
+                        reused.add(x, y);
+                    }
+                }
+            }
+
+            for (int generation = 0; generation < 300; generation++) {
+                fresh.evolve();
+                reused.evolve();
+            }
+            assertEquals(fresh.getLiveCells().asSet(), reused.getLiveCells().asSet());
+        }
+    }
+
+    @Test
+    public void testSettledTilesAreSkipped() {
+        TileEngine engine = new TileEngine();
+        for (int i = 0; i < 10; i++) {
+            // A block and a blinker in every tile
+            int x = i * TileEngine.TILE_SIZE + 10;
+            engine.add(x, 10);
+            engine.add(x + 1, 10);
+            engine.add(x, 11);
+            engine.add(x + 1, 11);
+            engine.add(x + 20, 30);
+            engine.add(x + 21, 30);
+            engine.add(x + 22, 30);
+        }
+
+        engine.evolve();
+        assertEquals(0.0, engine.getSkippedTileFraction());
+        engine.evolve();
+        engine.evolve();
+        assertEquals(1.0, engine.getSkippedTileFraction());
+
+        engine.evolve();
+        engine.evolve();
+        LongCellSet blinker = new LongCellSet();
+        engine.forEachLiveCellIn(30, 29, 33, 32, blinker::add);
+        assertEquals(3, blinker.size());
+        assertTrue(blinker.contains(31, 29));
+        assertTrue(blinker.contains(31, 31));
+        assertEquals(70, engine.getPopulation());
+    }
+
+    @Test
+    public void testEmptyTilesAreFreed() {
+        TileEngine engine = new TileEngine();
+        // A blinker on a tile corner needs the four tiles around it
+        engine.add(63, 64);
+        engine.add(64, 64);
+        engine.add(65, 64);
+        engine.evolve();
+        assertTrue(engine.getTileCount() >= 4);
+
+        engine.clear();
+        engine.add(10, 10);
+        engine.evolve();
+        engine.evolve();
+        engine.evolve();
+        assertEquals(0, engine.getPopulation());
+        assertEquals(0, engine.getTileCount());
+    }
+
+    @Test
+    public void testForEachLiveCellInRegion() {
+        TileEngine engine = new TileEngine();
+        engine.add(-1, -1);
+        engine.add(0, 0);
+        engine.add(63, 63);
+        engine.add(64, 64);
+        engine.add(1000, 1000);
+
+        LongCellSet region = new LongCellSet();
+        engine.forEachLiveCellIn(0, 0, 64, 65, region::add);
+
+        assertEquals(2, region.size());
+        assertTrue(region.contains(0, 0));
+        assertTrue(region.contains(63, 63));
+    }
+
+    @Test
+    public void testForEachBlockInMatchesCellCounts() {
+        TileEngine engine = new TileEngine();
+        Random random = new Random(5);
+        for (int x = -150; x < 150; x++) {
+            for (int y = -150; y < 150; y++) {
+                if (random.nextDouble() < 0.3) {
+                    engine.add(x, y);
+                }
+            }
+        }
+        engine.advance(50);
+
+        for (int shift : new int[] {0, 3, 5, 6, 8}) {
+            assertEquals(countCells(engine, -256, -256, 256, 256, shift), blocksOf(engine, -256, -256, 256, 256, shift));
+            // Tiles on the edge of a region that does not line up with them are counted by row
+            assertEquals(countCells(engine, -100, -37, 91, 140, shift), blocksOf(engine, -100, -37, 91, 140, shift));
+        }
+    }
+
+    private static Map<Long, Long> blocksOf(EvolutionEngine engine, int x0, int y0, int x1, int y1, int shift) {
+        Map<Long, Long> blocks = new HashMap<>();
+        engine.forEachBlockIn(x0, y0, x1, y1, shift,
+                (blockX, blockY, population) -> blocks.merge(Cell.pack(blockX, blockY), population, Long::sum));
+        return blocks;
+    }
+
+    private static Map<Long, Long> countCells(EvolutionEngine engine, int x0, int y0, int x1, int y1, int shift) {
+        Map<Long, Long> blocks = new HashMap<>();
+        engine.forEachLiveCellIn(x0, y0, x1, y1,
+                (x, y) -> blocks.merge(Cell.pack(x >> shift, y >> shift), 1L, Long::sum));
+        return blocks;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.malpenhorn.gameoflife;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ViewportTest {
+    @Test
+    public void testZoomKeepsCellUnderPointer() {
+        Viewport viewport = new Viewport(10, 20, 0, 500, 500);
+        double cellX = viewport.toCellX(100);
+        double cellY = viewport.toCellY(400);
+
+        Viewport zoomedOut = viewport.zoomIn(-3, 100, 400);
+        assertEquals(3, zoomedOut.getZoom());
+        assertEquals(cellX, zoomedOut.toCellX(100), 1e-9);
+        assertEquals(cellY, zoomedOut.toCellY(400), 1e-9);
+
+        Viewport zoomedIn = zoomedOut.zoomIn(5, 100, 400);
+        assertEquals(-2, zoomedIn.getZoom());
+        assertEquals(cellX, zoomedIn.toCellX(100), 1e-9);
+    }
+
+    @Test
+    public void testPanAndBlocks() {
+        Viewport viewport = new Viewport(0, 0, -2, 400, 400).pan(40, -40);
+        assertEquals(10, viewport.getCenterX(), 1e-9);
+        assertEquals(-10, viewport.getCenterY(), 1e-9);
+        assertEquals(4, viewport.getPixelsPerBlock());
+        assertEquals(101, viewport.getColumns());
+        assertEquals(-40, viewport.getBlockX0());
+        assertEquals(0, viewport.getOffsetX(), 1e-9);
+
+        Viewport zoomedOut = new Viewport(100, 0, 6, 100, 100);
+        assertEquals(6, zoomedOut.getShift());
+        // The left edge is at cell 100 - 50 * 64, inside block -49
+        assertEquals(-49, zoomedOut.getBlockX0());
+        assertEquals(-36 / 64.0, zoomedOut.getOffsetX(), 1e-9);
+    }
+}